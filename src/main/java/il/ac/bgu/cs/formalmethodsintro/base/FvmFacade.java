@@ -4,20 +4,34 @@ import java.io.InputStream;
 import java.util.*;
 
 import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Degeneralization;
 import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SimulationReduction;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SymbolicAutomaton;
 import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
-import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ParserBasedInterleavingActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystemSuccessors;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.BitCircuit;
 import il.ac.bgu.cs.formalmethodsintro.base.circuits.Circuit;
 import il.ac.bgu.cs.formalmethodsintro.base.exceptions.ActionNotFoundException;
 import il.ac.bgu.cs.formalmethodsintro.base.exceptions.StateNotFoundException;
 import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToGnba;
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
 import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.OptionContext;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.*;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.CompactTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.IndexedTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.MappedTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.ReachabilityEngine;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
 import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Util;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.LazyProduct;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.NestedDepthFirstSearch;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.SccEmptinessCheck;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.SwarmEmptinessCheck;
 import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
 import org.antlr.v4.runtime.ParserRuleContext;
 
@@ -42,17 +56,23 @@ import java.util.Collections;
  */
 public class FvmFacade {
 
-    private static FvmFacade INSTANCE = null;
+    /**
+     * Holds the single instance, which the class loader creates (once, and
+     * safely for all threads) on the first call to {@link #get()}.
+     */
+    private static final class InstanceHolder {
+
+        static final FvmFacade INSTANCE = new FvmFacade();
+    }
 
     /**
+     * The facade keeps no state between calls, so the instance can be shared
+     * by several threads.
      *
      * @return an instance of this class.
      */
     public static FvmFacade get() {
-        if (INSTANCE == null) {
-            INSTANCE = new FvmFacade();
-        }
-        return INSTANCE;
+        return InstanceHolder.INSTANCE;
     }
 
 
@@ -71,12 +91,9 @@ public class FvmFacade {
     public <S, A, P> boolean isActionDeterministic(TransitionSystem<S, A, P> ts) {
         if (ts.getInitialStates().size() > 1)
             return false;
-        for (TSTransition trans :  ts.getTransitions()) {
-            int counter = 0;
-            for (TSTransition transToCompare :  ts.getTransitions()) {
-                if(trans.getFrom().equals(transToCompare.getFrom()) && trans.getAction().equals(transToCompare.getAction()))
-                    counter++;
-                if(counter > 1)
+        for (S s : ts.getStates()) {
+            for (Set<S> successors : ts.getOutgoing(s).values()) {
+                if (successors.size() > 1)
                     return false;
             }
         }
@@ -96,15 +113,13 @@ public class FvmFacade {
     public <S, A, P> boolean isAPDeterministic(TransitionSystem<S, A, P> ts) {
         if (ts.getInitialStates().size() > 1)
             return false;
-        for (TSTransition trans :  ts.getTransitions()) {
-            int counter = 0;
-            for (TSTransition transToCompare :  ts.getTransitions()) {
-                if(trans.getFrom().equals(transToCompare.getFrom()) &&
-                    ts.getLabelingFunction().getOrDefault(trans.getTo(),new HashSet())
-                        .equals(ts.getLabelingFunction().getOrDefault(transToCompare.getTo(),new HashSet())))
-                    counter++;
-                if(counter > 1)
-                    return false;
+        for (S s : ts.getStates()) {
+            Set<Set<P>> seenLabels = new HashSet<>();
+            for (Set<S> successors : ts.getOutgoing(s).values()) {
+                for (S to : successors) {
+                    if (!seenLabels.add(ts.getLabelingFunction().getOrDefault(to, Collections.emptySet())))
+                        return false;
+                }
             }
         }
         return true;
@@ -122,7 +137,10 @@ public class FvmFacade {
      * @return {@code true} iff {@code e} is an execution of {@code ts}.
      */
     public <S, A, P> boolean isExecution(TransitionSystem<S, A, P> ts, AlternatingSequence<S, A> e) {
-        return isExecutionFragment(ts, e) && isInitialExecutionFragment(ts, e) && isMaximalExecutionFragment(ts, e);
+        if (!isExecutionFragment(ts, e)) {
+            return false;
+        }
+        return e.isEmpty() || (ts.getInitialStates().contains(e.head()) && isStateTerminal(ts, e.last()));
     }
 
     /**
@@ -139,28 +157,28 @@ public class FvmFacade {
      * {@code ts}.
      */
     public <S, A, P> boolean isExecutionFragment(TransitionSystem<S, A, P> ts, AlternatingSequence<S, A> e) {
-        AlternatingSequence<S,A> nextSeq = e;
+        List<S> states = e.getStates();
+        List<A> actions = e.getActions();
 
-        while(!e.isEmpty()){
-            S s1 = nextSeq.head();
+        for (int i = 0; i < states.size(); i++) {
+            S s1 = states.get(i);
             if (!ts.getStates().contains(s1))
                 throw new StateNotFoundException(s1);
-            if (nextSeq.tail().isEmpty())
+            if (i == actions.size())
                 break;
 
-            A a = nextSeq.tail().head();
+            A a = actions.get(i);
             if (!ts.getActions().contains(a))
                 throw new ActionNotFoundException(a);
-            if (nextSeq.tail().tail().isEmpty())
+            if (i + 1 == states.size())
                 return false;
 
-            S s2 = nextSeq.tail().tail().head();
+            S s2 = states.get(i + 1);
             if (!ts.getStates().contains(s2))
                 throw new StateNotFoundException(s2);
-            if(!ts.getTransitions().contains(new TSTransition<>(s1,a,s2))){
+            if (!ts.getSuccessors(s1, a).contains(s2)) {
                 return false;
             }
-            nextSeq = nextSeq.tail().tail();
         }
         return true;
     }
@@ -202,7 +220,7 @@ public class FvmFacade {
      */
     public <S, A, P> boolean isMaximalExecutionFragment(TransitionSystem<S, A, P> ts, AlternatingSequence<S, A> e) {
         if (!e.isEmpty()){
-            if (isExecutionFragment(ts, e) && post(ts, e.last()).isEmpty())
+            if (isExecutionFragment(ts, e) && isStateTerminal(ts, e.last()))
                 return true;
             else
                 return false;
@@ -210,6 +228,94 @@ public class FvmFacade {
         return true;
     }
 
+    /**
+     * Checks whether an alternating sequence is an execution of an
+     * {@link IndexedTransitionSystem}, such as a
+     * {@link MappedTransitionSystem}, without copying it.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param ts The transition system being tested.
+     * @param e The sequence that may or may not be an execution of {@code ts}.
+     * @return {@code true} iff {@code e} is an execution of {@code ts}.
+     */
+    public <S, A> boolean isExecution(IndexedTransitionSystem<S, A, ?> ts, AlternatingSequence<S, A> e) {
+        if (!isExecutionFragment(ts, e)) {
+            return false;
+        }
+        return e.isEmpty() || (ts.isInitial(stateId(ts, e.head())) && isStateTerminal(ts, e.last()));
+    }
+
+    /**
+     * Checks whether an alternating sequence is an execution fragment of an
+     * {@link IndexedTransitionSystem}.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param ts The transition system being tested.
+     * @param e The sequence that may or may not be an execution fragment of
+     * {@code ts}.
+     * @return {@code true} iff {@code e} is an execution fragment of
+     * {@code ts}.
+     */
+    public <S, A> boolean isExecutionFragment(IndexedTransitionSystem<S, A, ?> ts, AlternatingSequence<S, A> e) {
+        List<S> states = e.getStates();
+        List<A> actions = e.getActions();
+
+        for (int i = 0; i < states.size(); i++) {
+            int s1 = stateId(ts, states.get(i));
+            if (i == actions.size())
+                break;
+
+            int a = ts.getActionId(actions.get(i));
+            if (a < 0)
+                throw new ActionNotFoundException(actions.get(i));
+            if (i + 1 == states.size())
+                return false;
+
+            int s2 = stateId(ts, states.get(i + 1));
+            boolean found = false;
+            for (int edge = ts.getPostStart(s1); edge < ts.getPostEnd(s1) && !found; edge++) {
+                found = ts.getPostAction(edge) == a && ts.getPostTarget(edge) == s2;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an alternating sequence is an initial execution fragment
+     * of an {@link IndexedTransitionSystem}.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param ts The transition system being tested.
+     * @param e The sequence that may or may not be an initial execution
+     * fragment of {@code ts}.
+     * @return {@code true} iff {@code e} is an initial execution fragment of
+     * {@code ts}.
+     */
+    public <S, A> boolean isInitialExecutionFragment(IndexedTransitionSystem<S, A, ?> ts, AlternatingSequence<S, A> e) {
+        return e.isEmpty() || (isExecutionFragment(ts, e) && ts.isInitial(stateId(ts, e.head())));
+    }
+
+    /**
+     * Checks whether an alternating sequence is a maximal execution fragment of
+     * an {@link IndexedTransitionSystem}.
+     *
+     * @param <S> Type of states.
+     * @param <A> Type of actions.
+     * @param ts The transition system being tested.
+     * @param e The sequence that may or may not be a maximal execution fragment
+     * of {@code ts}.
+     * @return {@code true} iff {@code e} is a maximal fragment of {@code ts}.
+     */
+    public <S, A> boolean isMaximalExecutionFragment(IndexedTransitionSystem<S, A, ?> ts, AlternatingSequence<S, A> e) {
+        return e.isEmpty() || (isExecutionFragment(ts, e) && isStateTerminal(ts, e.last()));
+    }
+
     /**
      * Checks whether a state in {@code ts} is terminal.
      *
@@ -221,8 +327,31 @@ public class FvmFacade {
      * @throws StateNotFoundException if {@code s} is not a state of {@code ts}.
      */
     public <S, A> boolean isStateTerminal(TransitionSystem<S, A, ?> ts, S s) {
-        Set<S> sPost = post(ts, s);
-        return sPost.isEmpty();
+        if (!ts.getStates().contains(s))
+            throw new StateNotFoundException(s);
+        return ts.getOutgoing(s).isEmpty();
+    }
+
+    /**
+     * Checks whether a state in an {@link IndexedTransitionSystem} is
+     * terminal.
+     *
+     * @param <S> Type of states.
+     * @param ts Transition system of {@code s}.
+     * @param s The state being tested for terminality.
+     * @return {@code true} iff state {@code s} is terminal in {@code ts}.
+     * @throws StateNotFoundException if {@code s} is not a state of {@code ts}.
+     */
+    public <S> boolean isStateTerminal(IndexedTransitionSystem<S, ?, ?> ts, S s) {
+        int id = stateId(ts, s);
+        return ts.getPostStart(id) == ts.getPostEnd(id);
+    }
+
+    private static <S> int stateId(IndexedTransitionSystem<S, ?, ?> ts, S s) {
+        int id = ts.getStateId(s);
+        if (id < 0)
+            throw new StateNotFoundException(s);
+        return id;
     }
 
     /**
@@ -235,13 +364,7 @@ public class FvmFacade {
     public <S> Set<S> post(TransitionSystem<S, ?, ?> ts, S s) {
         if(!ts.getStates().contains(s))
             throw new StateNotFoundException(s);
-        Set<S> set= new HashSet<>();
-        for (TSTransition<S,?> trans : ts.getTransitions()){
-            if(trans.getFrom().equals(s)){
-                set.add(trans.getTo());
-            }
-        }
-       return  set;
+        return ts.getSuccessors(s);
     }
 
     /**
@@ -276,13 +399,7 @@ public class FvmFacade {
     public <S, A> Set<S> post(TransitionSystem<S, A, ?> ts, S s, A a) {
         if(!ts.getStates().contains(s))
             throw new StateNotFoundException(s);
-        Set<S> set= new HashSet<>();
-        for (TSTransition<S,?> trans : ts.getTransitions()){
-            if(trans.getFrom().equals(s) && trans.getAction().equals(a)){
-                set.add(trans.getTo());
-            }
-        }
-        return set;
+        return new HashSet<>(ts.getSuccessors(s, a));
     }
 
     /**
@@ -314,13 +431,7 @@ public class FvmFacade {
     public <S> Set<S> pre(TransitionSystem<S, ?, ?> ts, S s) {
         if(!ts.getStates().contains(s))
             throw new StateNotFoundException(s);
-        Set<S> set= new HashSet<>();
-        for (TSTransition<S,?> trans : ts.getTransitions()){
-            if(trans.getTo().equals(s)){
-                set.add(trans.getFrom());
-            }
-        }
-        return  set;
+        return ts.getPredecessors(s);
     }
 
     /**
@@ -355,13 +466,7 @@ public class FvmFacade {
     public <S, A> Set<S> pre(TransitionSystem<S, A, ?> ts, S s, A a) {
         if(!ts.getStates().contains(s))
             throw new StateNotFoundException(s);
-        Set<S> set= new HashSet<>();
-        for (TSTransition<S,?> trans : ts.getTransitions()){
-            if(trans.getTo().equals(s) && trans.getAction().equals(a) ){
-                set.add(trans.getFrom());
-            }
-        }
-        return  set;
+        return new HashSet<>(ts.getPredecessors(s, a));
     }
 
     /**
@@ -393,24 +498,34 @@ public class FvmFacade {
      * @param ts Transition system of {@code s}.
      * @return All states reachable in {@code ts}.
      */
+    public <S, A> Set<S> reach(TransitionSystem<S, A, ?> ts) {
+        CompactTransitionSystem<S, A, ?> cts = CompactTransitionSystem.from(ts);
+        BitSet visited = new ReachabilityEngine(cts).run(cts.getInitialStateIds()).getVisited();
 
-    private <S, A> void reachExcept(TransitionSystem<S, A, ?> ts, Set<S> checked, S from) {
-        for(S s : post(ts,from)){
-            if(!checked.contains(s)){
-                checked.add(s);
-                reachExcept(ts,checked,s);
-            }
+        Set<S> reached = new HashSet<>(Math.max(16, visited.cardinality() * 4 / 3 + 1));
+        for (int id = visited.nextSetBit(0); id >= 0; id = visited.nextSetBit(id + 1)) {
+            reached.add(cts.getState(id));
         }
+        return reached;
     }
-    public <S, A> Set<S> reach(TransitionSystem<S, A, ?> ts) {
-        Set<S> alreadyChecked = new HashSet<>();
-        for(S s0 : ts.getInitialStates()){
-            if(!alreadyChecked.contains(s0)) {
-                alreadyChecked.add(s0);
-                reachExcept(ts, alreadyChecked, s0);
-            }
+
+    /**
+     * Implements the {@code reach(TS)} function for an
+     * {@link IndexedTransitionSystem}, such as a {@link MappedTransitionSystem}
+     * too large to load as a {@link TransitionSystem}.
+     *
+     * @param <S> Type of states.
+     * @param ts The transition system.
+     * @return All states reachable in {@code ts}.
+     */
+    public <S> Set<S> reach(IndexedTransitionSystem<S, ?, ?> ts) {
+        BitSet visited = new ReachabilityEngine(ts).run(ts.getInitialStateIds()).getVisited();
+
+        Set<S> reached = new HashSet<>(Math.max(16, visited.cardinality() * 4 / 3 + 1));
+        for (int id = visited.nextSetBit(0); id >= 0; id = visited.nextSetBit(id + 1)) {
+            reached.add(ts.getState(id));
         }
-        return alreadyChecked;
+        return reached;
     }
 
     //<checked>
@@ -647,83 +762,77 @@ public class FvmFacade {
         return newPg;
     }
 
-    private Boolean trueOrFalse(int i){
-        if(i == 0)
-            return false;
-        return true;
-    }
-    private Boolean isZeroReg( Map<String, Boolean> regs){
-        for(String key : regs.keySet()){
-            if(regs.get(key))
-                return false;
-        }
-        return true;
-    }
     /**
-     * Creates a {@link TransitionSystem} representing the passed circuit.
+     * Creates a {@link TransitionSystem} representing the passed circuit. Only
+     * the states reachable from the initial ones, where all registers are 0,
+     * are created. Input and register values are handled as bit vectors (see
+     * {@link BitCircuit}); each distinct vector is turned into a map once,
+     * and shared by every state and action using it.
      *
      * @param c The circuit to translate into a {@link TransitionSystem}.
      * @return A {@link TransitionSystem} representing {@code c}.
+     * @throws IllegalArgumentException if {@code c} has more than 30 inputs,
+     * or more than 64 registers or outputs.
      */
     public TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> transitionSystemFromCircuit(
             Circuit c) {
-        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts = new TransitionSystem();
-
-        List<Map<String, Boolean>> listInputMap = new LinkedList<>();
-        String[] inputsNames = c.getInputPortNames().toArray(new String[c.getInputPortNames().size()]);
-        for(int i = 0 ; i < Math.pow(2, inputsNames.length) ; i++ ){
-            Map map = new HashMap();
-            for(int j = 1 ; j <= inputsNames.length ; j++){
-                map.put(inputsNames[j-1],trueOrFalse((i/j)%2));
-            }
-            listInputMap.add(map);
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts = new TransitionSystem<>();
+        BitCircuit bc = BitCircuit.of(c);
+        String[] inputNames = bc.getInputPortNames().toArray(new String[0]);
+        String[] registerNames = bc.getRegisterNames().toArray(new String[0]);
+        String[] outputNames = bc.getOutputPortNames().toArray(new String[0]);
+        if (inputNames.length > 30) {
+            throw new IllegalArgumentException("Cannot enumerate the values of " + inputNames.length + " inputs");
         }
 
-        List<Map<String, Boolean>> listRegMap = new LinkedList<>();
-        String[] regsNames = c.getRegisterNames().toArray(new String[c.getRegisterNames().size()]);
-        for(int i = 0 ; i < Math.pow(2, regsNames.length) ; i++ ){
-            Map map = new HashMap();
-            for(int j = 1 ; j <= regsNames.length ; j++){
-                map.put(regsNames[j-1],trueOrFalse((i/j)%2));
-            }
-            listRegMap.add(map);
+        List<Map<String, Boolean>> inputMaps = new ArrayList<>(1 << inputNames.length);
+        for (long in = 0; in < (1L << inputNames.length); in++) {
+            inputMaps.add(Collections.unmodifiableMap(BitCircuit.unpack(bc.getInputPortNames(), in)));
         }
 
-        for(Map m1 : listInputMap){
-            for(Map m2 : listRegMap){
-                ts.addState(Pair.pair(m1,m2));
-                if(isZeroReg(m2)){
-                    ts.addInitialState(Pair.pair(m1,m2));
+        // The successors of (in, regs) are (in', next(in, regs)) for every
+        // input in', so exploring the register values is enough.
+        Map<Long, Map<String, Boolean>> registerMaps = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        registerMaps.put(0L, Collections.unmodifiableMap(BitCircuit.unpack(bc.getRegisterNames(), 0L)));
+        queue.add(0L);
+        while (!queue.isEmpty()) {
+            long regs = queue.poll();
+            Map<String, Boolean> regMap = registerMaps.get(regs);
+            for (int in = 0; in < inputMaps.size(); in++) {
+                Pair<Map<String, Boolean>, Map<String, Boolean>> state = new Pair<>(inputMaps.get(in), regMap);
+                ts.addState(state);
+                if (regs == 0) {
+                    ts.addInitialState(state);
                 }
-            }
-        }
-
-        for(Pair<Map<String, Boolean>, Map<String, Boolean>> p : ts.getStates()){
-            for(String input: p.first.keySet()){
-                if(p.first.get(input)) {
-                    ts.addToLabel(p, input);
-                }
-            }
-            for(String reg: p.second.keySet()){
-                if(p.second.get(reg)) {
-                    ts.addToLabel(p, reg);
+                labelByBits(ts, state, inputNames, in);
+                labelByBits(ts, state, registerNames, regs);
+                labelByBits(ts, state, outputNames, bc.computeOutputs(in, regs));
+
+                long next = bc.updateRegisters(in, regs);
+                Map<String, Boolean> nextMap = registerMaps.get(next);
+                if (nextMap == null) {
+                    nextMap = Collections.unmodifiableMap(BitCircuit.unpack(bc.getRegisterNames(), next));
+                    registerMaps.put(next, nextMap);
+                    queue.add(next);
                 }
-            }
-            Map<String, Boolean> outputs = c.computeOutputs(p.first,p.second);
-            for(String output: outputs.keySet()){
-                if(outputs.get(output)) {
-                    ts.addToLabel(p, output);
+                for (Map<String, Boolean> action : inputMaps) {
+                    ts.addTransition(new TSTransition<>(state, action, new Pair<>(action, nextMap)));
                 }
             }
-            Map newReg = c.updateRegisters(p.first, p.second);
-            for( Map inputs :listInputMap){
-                ts.addTransitionFrom(p).action(inputs).to(new Pair(inputs, newReg));
-            }
         }
 
         return ts;
     }
 
+    private static <S> void labelByBits(TransitionSystem<S, ?, Object> ts, S s, String[] names, long bits) {
+        for (int bit = 0; bit < names.length; bit++) {
+            if ((bits & (1L << bit)) != 0) {
+                ts.addToLabel(s, names[bit]);
+            }
+        }
+    }
+
     //checked (mas o menos)
     /**
      * Creates a {@link TransitionSystem} from a program graph.
@@ -738,34 +847,65 @@ public class FvmFacade {
      */
     public <L, A> TransitionSystem<Pair<L, Map<String, Object>>, A, String> transitionSystemFromProgramGraph(
             ProgramGraph<L, A> pg, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs) {
+        return transitionSystemFromSuccessors(pg, actionDefs, conditionDefs);
+    }
+
+    /**
+     * Creates a {@link TransitionSystem} from a program graph, exploring its
+     * states with several threads. The result is the same as the one of
+     * {@link #transitionSystemFromProgramGraph(ProgramGraph, Set, Set)}.
+     *
+     * @param <L> Type of program graph locations.
+     * @param <A> Type of program graph actions.
+     * @param pg The program graph to be translated into a transition system.
+     * @param actionDefs Defines the effect of each action. Must be thread-safe.
+     * @param conditionDefs Defines the conditions (guards) of the program
+     * graph. Must be thread-safe.
+     * @param threads Number of threads to use.
+     * @return A transition system representing {@code pg}.
+     */
+    public <L, A> TransitionSystem<Pair<L, Map<String, Object>>, A, String> transitionSystemFromProgramGraph(
+            ProgramGraph<L, A> pg, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs, int threads) {
+        return new ParallelStateSpaceExplorer<>(pg, actionDefs, conditionDefs).threads(threads).explore();
+    }
+
+    /**
+     * Explores the states reachable in a program graph (or anything that can
+     * list the transitions leaving a location), breadth first.
+     */
+    private <L, A> TransitionSystem<Pair<L, Map<String, Object>>, A, String> transitionSystemFromSuccessors(
+            PGSuccessorGenerator<L, A> pg, Set<ActionDef> actionDefs, Set<ConditionDef> conditionDefs) {
         TransitionSystem<Pair<L, Map<String, Object>>, A, String> ts = new TransitionSystem();
+        // Variables are stored in slot-indexed environments, sharing one
+        // layout for the whole exploration.
+        Environment.Layout layout = new Environment.Layout();
+        Set<List<String>> initializations = pg.getInitalizations();
         for( L l0: pg.getInitialLocations()){
-            if(!pg.getInitalizations().isEmpty()){
-                for ( List<String> initilize: pg.getInitalizations() ) {
-                    Map env = new HashMap<>();
+            if(!initializations.isEmpty()){
+                for ( List<String> initilize: initializations ) {
+                    Map<String, Object> env = Environment.empty(layout);
 
                     for(String s : initilize ){
                         env = ActionDef.effect(actionDefs, env, s);
                     }
-                    ts.addInitialState(new Pair(l0,env));
+                    ts.addInitialState(new Pair(l0, Environment.of(layout, env)));
                 }
             }else {
-                ts.addInitialState(new Pair(l0, new HashMap<>()));
+                ts.addInitialState(new Pair(l0, Environment.empty(layout)));
             }
         }
-        LinkedList<String> conditions = new LinkedList<>();
+        Set<String> conditions = new LinkedHashSet<>();
 
         LinkedList<Pair<L, Map<String, Object>>> queue = new LinkedList();
         queue.addAll(ts.getInitialStates());
 
         while(!queue.isEmpty()) {
             Pair<L, Map<String, Object>> st  = queue.removeFirst();
-            //TODO- may be add labels
-            for (PGTransition<L,A> trans : pg.getTransitions()){
-                if(trans.getFrom().equals(st.first) && ConditionDef.evaluate(conditionDefs, st.second, trans.getCondition())) {
+            for (PGTransition<L,A> trans : pg.getOutgoingTransitions(st.first)){
+                if(ConditionDef.evaluate(conditionDefs, st.second, trans.getCondition())) {
                     Map<String, Object> effect = ActionDef.effect(actionDefs,st.second, trans.getAction());
                     if(effect != null) {
-                        Pair<L, Map<String, Object>> newSt = new Pair(trans.getTo(), ActionDef.effect(actionDefs, st.second, trans.getAction()));
+                        Pair<L, Map<String, Object>> newSt = new Pair(trans.getTo(), Environment.of(layout, effect));
                         conditions.add(trans.getCondition());
                         if (!ts.getStates().contains(newSt)) {
                             queue.add(newSt);
@@ -792,165 +932,6 @@ public class FvmFacade {
 
     }
 
-
-
-    private <L,A> ProgramGraph<List<L>,A> createBigPgFromPg (ProgramGraph<L, A> pg){
-        ProgramGraph<List<L>,A> bigPg = new ProgramGraph<>();
-        for (L loc : pg.getLocations()){
-            List<L> bigLoc = new LinkedList<>();
-            bigLoc.add(loc);
-            if (pg.getInitialLocations().contains(loc)){
-                bigPg.setInitial(bigLoc, true);
-            }
-            bigPg.addLocation(bigLoc);
-        }
-
-        for (PGTransition<L,A> trans : pg.getTransitions()){
-            PGTransition<List<L>, A> bigNewTrans = new PGTransition<>(
-                    Arrays.asList(trans.getFrom()),
-                    trans.getCondition() ,
-                    trans.getAction(),
-                    Arrays.asList(trans.getTo()));
-            bigPg.addTransition(bigNewTrans);
-        }
-
-        // initializations
-        for (List<String> inits : pg.getInitalizations()) {
-            bigPg.addInitalization(inits);
-        }
-        return  bigPg;
-    }
-
-    private <L,A>  ProgramGraph<List<L>,A> mergeBigPgToSmallPg (ProgramGraph<List<L>,A> bPg, ProgramGraph<L, A> pg){
-
-        ProgramGraph<List<L>,A> newBigPg = new ProgramGraph<>();
-
-        Set<List<L>> locations = bPg.getLocations();
-
-        for (List<L> locList : locations) {
-            for (L loc : pg.getLocations()) {
-                List<L> clonedList = new LinkedList<>(locList);
-                clonedList.add(loc);
-
-                if (pg.getInitialLocations().contains(loc) && bPg.getInitialLocations().contains(locList)) {
-                    newBigPg.setInitial(clonedList, true);
-                }
-
-                newBigPg.addLocation(clonedList);
-            }
-        }
-
-        // trans
-        ParserBasedInterleavingActDef parser = new ParserBasedInterleavingActDef();
-
-        List<PGTransition<List<L>,A>> oneSideTransBig = new LinkedList<>();
-        List<PGTransition<L,A>> oneSideTrans = new LinkedList<>();
-        //left side
-        for (PGTransition<List<L>, A> trans : bPg.getTransitions()) {
-            if (!parser.isOneSidedAction(trans.getAction().toString())) {
-                for (L loc : pg.getLocations()) {
-                    List<L> from = new LinkedList<>(trans.getFrom());
-                    List<L> to = new LinkedList<>(trans.getTo());
-                    from.add(loc);
-                    to.add(loc);
-                    PGTransition<List<L>, A> newBigTran = new PGTransition<>(
-                            from, trans.getCondition(), trans.getAction(), to);
-                    newBigPg.addTransition(newBigTran);
-                }
-            }
-            else {
-                oneSideTransBig.add(trans);
-            }
-        }
-
-        //right side
-        for (PGTransition<L, A> trans : pg.getTransitions()) {
-            if (!parser.isOneSidedAction(trans.getAction().toString())) {
-                for (List<L> loc : bPg.getLocations()) {
-
-                    List<L> ClonedFrom = new LinkedList<>(loc);
-                    List<L> ClonedTo = new LinkedList<>(loc);
-
-                    ClonedFrom.add(trans.getFrom());
-                    ClonedTo.add(trans.getTo());
-                    PGTransition<List<L>, A> newTran = new PGTransition<>(
-                            ClonedFrom, trans.getCondition(), trans.getAction(), ClonedTo);
-                    newBigPg.addTransition(newTran);
-                }
-            }
-            else {
-                oneSideTrans.add(trans);
-            }
-        }
-
-        //handshake
-        for (PGTransition<List<L>, A> bigTran : oneSideTransBig) {
-            for (PGTransition<L, A> tran : oneSideTrans) {
-                A act = getHandShakeAction(bigTran.getAction(), tran.getAction());
-                if( act != null) {
-                    List<L> from = new LinkedList(bigTran.getFrom());
-                    List<L> to = new LinkedList(bigTran.getTo());
-                    from.add(tran.getFrom());
-                    to.add(tran.getTo());
-                    PGTransition<List<L>, A> newTran = new PGTransition<>(
-                            from, mergeConds(bigTran.getCondition(), tran.getCondition()), act, to);
-                    newBigPg.addTransition(newTran);
-                }
-            }
-        }
-
-        //initialization
-        for (List<String> bigInit : bPg.getInitalizations()) {
-            for (List<String> init : pg.getInitalizations()) {
-                List<String> newInit = new ArrayList<>(bigInit);
-                newInit.addAll(init);
-                newBigPg.addInitalization(newInit);
-            }
-        }
-
-        if (bPg.getInitalizations().isEmpty()){
-            for (List<String> init : pg.getInitalizations()){
-                newBigPg.addInitalization(init);
-            }
-        }
-
-        if (pg.getInitalizations().isEmpty()){
-            for (List<String> init : bPg.getInitalizations()){
-                newBigPg.addInitalization(init);
-            }
-        }
-
-        return newBigPg;
-    }
-
-
-    private <A> A getHandShakeAction(A leftAction, A rightAction) {
-        if (!(leftAction instanceof String && rightAction instanceof String))
-            return null;
-
-        String[][] acceptable = {{"?","!"} , {"!","?"}};
-
-        for (int i = 0; i < 2 ; i++){
-            if (((String)leftAction).contains(acceptable[i][0]) &&
-                    ((String)rightAction).contains(acceptable[i][1])){
-                String chanelNameLeft = ((String) leftAction).substring(0, ((String) leftAction).indexOf(acceptable[i][0]));
-                String chanelNameRight = ((String)rightAction).substring(0, ((String) rightAction).indexOf(acceptable[i][1]));
-                if(chanelNameRight.equals(chanelNameLeft))
-                    return (A)(leftAction+"|"+rightAction);
-            }
-        }
-
-        return null;
-    }
-
-    private String mergeConds(String cond1, String cond2) {
-        if (cond1.length() == 0)
-            return cond2;
-        if (cond2.length() == 0)
-            return cond1;
-        return "(" + cond1 + ") && (" + cond2 + ")";
-    }
-
     /**
      * Creates a transition system representing channel system {@code cs}.
      *
@@ -970,13 +951,19 @@ public class FvmFacade {
     public <L, A> TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> transitionSystemFromChannelSystem(
          ChannelSystem<L, A> cs, Set<ActionDef> actions, Set<ConditionDef> conditions) {
 
-        ProgramGraph<List<L>, A> bigPg = createBigPgFromPg(cs.getProgramGraphs().get(0));
-
-        for (int i = 1; i < cs.getProgramGraphs().size(); i++) {
-            bigPg = mergeBigPgToSmallPg(bigPg, cs.getProgramGraphs().get(i));
-        }
+        return transitionSystemFromSuccessors(new ChannelSystemSuccessors<>(cs), actions, conditions);
+    }
 
-        return transitionSystemFromProgramGraph(bigPg, actions, conditions);
+    /**
+     * Creates a transition system representing channel system {@code cs},
+     * exploring its states with several threads.
+     *
+     * @see #transitionSystemFromProgramGraph(ProgramGraph, Set, Set, int)
+     */
+    public <L, A> TransitionSystem<Pair<List<L>, Map<String, Object>>, A, String> transitionSystemFromChannelSystem(
+            ChannelSystem<L, A> cs, Set<ActionDef> actions, Set<ConditionDef> conditions, int threads) {
+        return new ParallelStateSpaceExplorer<>(new ChannelSystemSuccessors<>(cs), actions, conditions)
+                .threads(threads).explore();
     }
 
     /**
@@ -1015,9 +1002,8 @@ public class FvmFacade {
         return programGraphFromNanoPromela(tree);
     }
 
-    Set<String> visited = new HashSet<>();
-    final String trueCondition = "true";
-    final String exitLocation = "";
+    private static final String trueCondition = "true";
+    private static final String exitLocation = "";
 
 
     private ProgramGraph<String, String> programGraphFromNanoPromela(StmtContext nanopromela) {
@@ -1089,7 +1075,7 @@ public class FvmFacade {
         for (OptionContext option : stmt.ifstmt().option()) {
             loc2Trans = sub(option.stmt());
             for (PGTransition<String, String> tran : loc2Trans.get(option.stmt().getText())) {
-                String cond = mergeConds(option.boolexpr().getText(), tran.getCondition());
+                String cond = Util.mergeConditions(option.boolexpr().getText(), tran.getCondition());
                 appendTransition(transitions, stmt.getText(), cond, tran.getAction(), tran.getTo());
             }
         }
@@ -1104,8 +1090,8 @@ public class FvmFacade {
         for (OptionContext option : stmt.dostmt().option()) {
             loc2Trans.putAll(sub(option.stmt()));
             String cond = option.boolexpr().getText();
-            visited =  new HashSet<>();
-            loc2Trans.putAll(getTransRec(loc2Trans, stmt.getText(), option.stmt().getText(), stmt.getText(), cond));
+            loc2Trans.putAll(getTransRec(loc2Trans, stmt.getText(), option.stmt().getText(), stmt.getText(), cond,
+                    new HashSet<>()));
             String notgi = "!(" + cond + ")";
             condsList.add(notgi);
         }
@@ -1127,26 +1113,25 @@ public class FvmFacade {
         loc2TransTmp = sub(stmt1);
         loc2Trans = sub(stmt2);
         loc2Trans.putAll(loc2TransTmp);
-        visited =  new HashSet<>();
-        loc2Trans.putAll(getTransRec(loc2Trans, stmt.getText(), stmt1.getText(), stmt2.getText(), ""));
+        loc2Trans.putAll(getTransRec(loc2Trans, stmt.getText(), stmt1.getText(), stmt2.getText(), "", new HashSet<>()));
         return loc2Trans;
     }
 
 
 
     private Map<String, Set<PGTransition<String, String>>> getTransRec(Map<String, Set<PGTransition<String, String>>> loc2Trans, String Stmt,
-                        String optionStmt, String toStmt, String cond) {
+                        String optionStmt, String toStmt, String cond, Set<String> visited) {
         if (!visited.contains(optionStmt)) {
             visited.add(optionStmt);
             for (PGTransition<String, String> tran : loc2Trans.get(optionStmt)) {
-                String mergedCond = mergeConds(cond, tran.getCondition());
+                String mergedCond = Util.mergeConditions(cond, tran.getCondition());
                 String to = tran.getTo() + ";" + toStmt;
                 if (tran.getTo().equals(exitLocation))
                     to = toStmt;
                 appendTransitionToMap(loc2Trans, Stmt, mergedCond, tran.getAction(), to);
 
                 if (!tran.getTo().isEmpty())
-                    loc2Trans.putAll(getTransRec(loc2Trans, to, tran.getTo(), toStmt, trueCondition));
+                    loc2Trans.putAll(getTransRec(loc2Trans, to, tran.getTo(), toStmt, trueCondition, visited));
             }
         }
         return loc2Trans;
@@ -1167,7 +1152,28 @@ public class FvmFacade {
      */
     public <Sts, Saut, A, P> TransitionSystem<Pair<Sts, Saut>, A, Saut> product(TransitionSystem<Sts, A, P> ts,
             Automaton<Saut, P> aut) {
-        throw new java.lang.UnsupportedOperationException();
+        LazyProduct<Sts, A, P, Saut> lazy = new LazyProduct<>(ts, aut);
+        TransitionSystem<Pair<Sts, Saut>, A, Saut> product = new TransitionSystem<>();
+        product.addAllAtomicPropositions(aut.getTransitions().keySet());
+
+        Queue<Pair<Sts, Saut>> queue = new ArrayDeque<>();
+        for (Pair<Sts, Saut> initial : lazy.getInitialStates()) {
+            product.addInitialState(initial);
+            product.addToLabel(initial, initial.second);
+            queue.add(initial);
+        }
+        while (!queue.isEmpty()) {
+            Pair<Sts, Saut> from = queue.poll();
+            lazy.forEachTransition(from, (action, to) -> {
+                if (!product.getStates().contains(to)) {
+                    product.addToLabel(to, to.second);
+                    queue.add(to);
+                }
+                product.addTransition(new TSTransition<>(from, action, to));
+            });
+        }
+
+        return product;
     }
 
     /**
@@ -1186,7 +1192,62 @@ public class FvmFacade {
      */
     public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(TransitionSystem<S, A, P> ts,
             Automaton<Saut, P> aut) {
-        throw new java.lang.UnsupportedOperationException();
+        return new NestedDepthFirstSearch<>(new LazyProduct<>(ts, aut)).run();
+    }
+
+    /**
+     * Verify that a system satisfies an omega regular property, running
+     * several randomized nested depth-first searches in parallel. The first
+     * search to finish decides the result.
+     *
+     * @see #verifyAnOmegaRegularProperty(TransitionSystem, Automaton)
+     * @param threads Number of parallel searches.
+     */
+    public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(TransitionSystem<S, A, P> ts,
+            Automaton<Saut, P> aut, int threads) {
+        return new SwarmEmptinessCheck<>(new LazyProduct<>(ts, aut), threads).run();
+    }
+
+    /**
+     * Verify that a system satisfies an omega regular property, given as a
+     * generalized Büchi automaton. The check works on the colors directly,
+     * without translating the automaton to a Büchi automaton.
+     *
+     * @param <S> Type of states in the transition system.
+     * @param <Saut> Type of states in the automaton.
+     * @param <A> Type of actions in the transition system.
+     * @param <P> Type of atomic propositions in the transition system, which is
+     * also the type of the automaton alphabet.
+     * @param ts The transition system.
+     * @param aut A generalized Büchi automaton for the words that do not
+     * satisfy the property.
+     * @return A VerificationSucceeded object or a VerificationFailed object
+     * with a counterexample, whose cycle visits every color of {@code aut}.
+     */
+    public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(TransitionSystem<S, A, P> ts,
+            MultiColorAutomaton<Saut, P> aut) {
+        return new SccEmptinessCheck<>(new LazyProduct<>(ts, aut)).run();
+    }
+
+    /**
+     * Verify that a system satisfies an omega regular property, given as a
+     * generalized Büchi automaton whose transitions are guarded by cubes over
+     * the propositions. Labels are matched against the guards as bit masks,
+     * and propositions the automaton does not mention are ignored.
+     *
+     * @param <S> Type of states in the transition system.
+     * @param <Saut> Type of states in the automaton.
+     * @param <A> Type of actions in the transition system.
+     * @param <P> Type of atomic propositions.
+     * @param ts The transition system.
+     * @param aut A generalized Büchi automaton for the words that do not
+     * satisfy the property.
+     * @return A VerificationSucceeded object or a VerificationFailed object
+     * with a counterexample.
+     */
+    public <S, A, P, Saut> VerificationResult<S> verifyAnOmegaRegularProperty(TransitionSystem<S, A, P> ts,
+            SymbolicAutomaton<Saut, P> aut) {
+        return new SccEmptinessCheck<>(new LazyProduct<>(ts, aut)).run();
     }
 
     /**
@@ -1195,10 +1256,12 @@ public class FvmFacade {
      *
      * @param <L> Type of resultant automaton transition alphabet
      * @param ltl The LTL formula represented as a parse-tree.
-     * @return An automaton A such that L_\omega(A)=Words(ltl)
+     * @return An automaton A such that L_\omega(A)=Words(ltl), reduced by
+     * direct simulation before and after degeneralization.
      */
     public <L> Automaton<?, L> LTL2NBA(LTL<L> ltl) {
-        throw new java.lang.UnsupportedOperationException();
+        MultiColorAutomaton<Set<LTL<L>>, L> gnba = SimulationReduction.reduce(new LtlToGnba<>(ltl).translate());
+        return SimulationReduction.reduce(Degeneralization.toNba(gnba));
     }
 
     /**
@@ -1210,7 +1273,7 @@ public class FvmFacade {
      * @return An equivalent automaton with a single set of accepting states.
      */
     public <L> Automaton<?, L> GNBA2NBA(MultiColorAutomaton<?, L> mulAut) {
-        throw new java.lang.UnsupportedOperationException();
+        return Degeneralization.toNba(mulAut);
     }
 
 }
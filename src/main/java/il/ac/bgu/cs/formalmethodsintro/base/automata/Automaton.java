@@ -1,28 +1,8 @@
 package il.ac.bgu.cs.formalmethodsintro.base.automata;
 
-import static java.util.Arrays.asList;
-
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.util.Set;
 
-import org.svvrl.goal.cmd.Constant;
-import org.svvrl.goal.cmd.Context;
-import org.svvrl.goal.cmd.EquivalenceCommand;
-import org.svvrl.goal.cmd.Expression;
-import org.svvrl.goal.cmd.LoadCommand;
-import org.svvrl.goal.cmd.Lval;
-import org.svvrl.goal.cmd.TranslateCommand;
-import org.svvrl.goal.core.aut.fsa.FSA;
-import org.svvrl.goal.core.aut.opt.RefinedSimulation;
-import org.svvrl.goal.core.aut.opt.RefinedSimulation2;
-import org.svvrl.goal.core.aut.opt.SimulationRepository;
-import org.svvrl.goal.core.comp.ComplementRepository;
-import org.svvrl.goal.core.comp.piterman.PitermanConstruction;
-import org.svvrl.goal.core.io.CodecRepository;
-import org.svvrl.goal.core.io.GFFCodec;
-
-import il.ac.bgu.cs.formalmethodsintro.base.goal.AutomatonIO;
+import il.ac.bgu.cs.formalmethodsintro.base.goal.GoalEquivalence;
 
 /**
  * An non-deterministic automaton, composed of states and transitions.
@@ -40,86 +20,55 @@ public class Automaton<State, Sigma> extends MultiColorAutomaton<State, Sigma> {
         return super.getAcceptingStates(0);
     }
 
+    /**
+     * @return {@code true} iff this automaton and {@code other} accept the
+     * same language, checked natively with {@link InclusionCheck} in both
+     * directions.
+     */
     public boolean isEquivalentTo(Automaton<?, Sigma> other) {
-        try {
-            AutomatonIO.write((Automaton<?, Sigma>) other, "other.gff");
-            AutomatonIO.write(this, "this.gff");
-
-            Context context = new Context();
-
-            Constant con1 = new Constant("this.gff");
-            Constant con2 = new Constant("other.gff");
-
-            Lval lval1 = new Lval("th", new Expression[]{});
-            Lval lval2 = new Lval("ot", new Expression[]{});
-
-            CodecRepository.add(0, new GFFCodec());
-
-            SimulationRepository.addSimulation2("RefinedSimilarity", FSA.class, RefinedSimulation2.class);
-            SimulationRepository.addSimulation("RefinedSimilarity", FSA.class, RefinedSimulation.class);
-
-            ComplementRepository.add("Safra-Piterman Construction", PitermanConstruction.class);
-
-            LoadCommand lc1 = new LoadCommand(asList(lval1, con1));
-            lc1.eval(context);
+        return isIncludedIn(other) && other.isIncludedIn(this);
+    }
 
-            LoadCommand lc2 = new LoadCommand(asList(lval2, con2));
-            lc2.eval(context);
+    public boolean isIncludedIn(Automaton<?, Sigma> other) {
+        return inclusionCounterexample(other) == null;
+    }
 
-            EquivalenceCommand ec = new EquivalenceCommand(asList(lval1, lval2));
+    /**
+     * @return A word accepted by this automaton and rejected by
+     * {@code other}, or {@code null} if there is none.
+     */
+    public Lasso<Sigma> inclusionCounterexample(Automaton<?, Sigma> other) {
+        return new InclusionCheck<>(this, other).run();
+    }
 
-            return (Boolean) ec.eval(context);
+    public boolean isUniversal(Set<Set<Sigma>> alphabet) {
+        return universalityCounterexample(alphabet) == null;
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return false;
+    /**
+     * @param alphabet The letters of the words to consider.
+     * @return A word over {@code alphabet} this automaton rejects, or
+     * {@code null} if it accepts them all.
+     */
+    public Lasso<Sigma> universalityCounterexample(Set<Set<Sigma>> alphabet) {
+        Automaton<String, Sigma> all = new Automaton<>();
+        all.setInitial("all");
+        all.setAccepting("all");
+        for (Set<Sigma> letter : alphabet) {
+            all.addTransition("all", letter, "all");
         }
+        return all.inclusionCounterexample(this);
     }
 
+    /**
+     * @param serializedAutomaton A QPTL formula, in GOAL syntax.
+     * @return {@code true} iff this automaton accepts exactly the words
+     * satisfying the formula, checked by GOAL.
+     * @throws IllegalArgumentException if the formula can not be parsed.
+     * @throws IllegalStateException if GOAL fails to check the equivalence.
+     */
     public boolean isEquivalentTo(String serializedAutomaton) {
-        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\r\n"
-                + "<logic name=\"QPTL\">\r\n" + "    <name/>\r\n" + "    <description/>\r\n" + "    <formula>"
-                + serializedAutomaton + "</formula>\r\n" + "</logic>\r\n" + "";
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("formula.gff"))) {
-
-            writer.write(xml);
-            writer.close();
-
-            AutomatonIO.write(this, "this.gff");
-
-            Context context = new Context();
-
-            Constant con1 = new Constant("this.gff");
-            Constant con3 = new Constant("formula.gff");
-
-            Lval lval1 = new Lval("th", new Expression[]{});
-            Lval lval3 = new Lval("fo", new Expression[]{});
-
-            CodecRepository.add(0, new GFFCodec());
-
-            SimulationRepository.addSimulation2("RefinedSimilarity", FSA.class, RefinedSimulation2.class);
-            SimulationRepository.addSimulation("RefinedSimilarity", FSA.class, RefinedSimulation.class);
-
-            ComplementRepository.add("Safra-Piterman Construction", PitermanConstruction.class);
-
-            LoadCommand lc1 = new LoadCommand(asList(lval1, con1));
-            lc1.eval(context);
-
-            LoadCommand lc3 = new LoadCommand(asList(lval3, con3));
-            lc3.eval(context);
-
-            TranslateCommand tc = new TranslateCommand(asList(lval3));
-            tc.eval(context);
-
-            EquivalenceCommand ec = new EquivalenceCommand(asList(lval1, tc));
-
-            return (Boolean) ec.eval(context);
-
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            return false;
-        }
+        return GoalEquivalence.isEquivalentToFormula(this, serializedAutomaton);
     }
 
 }
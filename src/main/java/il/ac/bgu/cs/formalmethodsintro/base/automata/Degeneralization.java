@@ -0,0 +1,114 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Translates a generalized Büchi automaton with colors {@code F_0..F_k-1} to
+ * an equivalent Büchi automaton. The Büchi automaton has a copy of each state
+ * for each color: copy {@code i} of a state waits for color {@code i}, moving
+ * to copy {@code i+1 (mod k)} when leaving a state of {@code F_i}. The
+ * accepting states are the copy {@code 0} states that are in {@code F_0}.
+ * Without colors, every run of the generalized automaton is accepting, and
+ * so is every state of the result.
+ *
+ * Copies are created only when reached from an initial state, so the result
+ * is at most {@code k} times the reachable part of the input, and often much
+ * smaller. Input states are numbered as they are found, and each copy is
+ * created once, with the number {@code state * k + copy}.
+ */
+public class Degeneralization<Q, L> {
+
+    private final MultiColorAutomaton<Q, L> gnba;
+    private final List<Set<Q>> colors = new ArrayList<>();
+    private final int copies;
+
+    private final Map<Q, Integer> ids = new HashMap<>();
+    private final List<Q> states = new ArrayList<>();
+    private final Map<Integer, Pair<Q, Integer>> created = new HashMap<>();
+    private final BitSet queued = new BitSet();
+    private final Deque<Integer> queue = new ArrayDeque<>();
+
+    private Degeneralization(MultiColorAutomaton<Q, L> gnba) {
+        this.gnba = gnba;
+        List<Integer> sorted = new ArrayList<>(gnba.getColors());
+        Collections.sort(sorted);
+        for (int color : sorted) {
+            colors.add(gnba.getAcceptingStates(color));
+        }
+        copies = Math.max(colors.size(), 1);
+    }
+
+    /**
+     * @param <Q> Type of states of the generalized automaton.
+     * @param <L> Type of the alphabet.
+     * @param gnba A generalized Büchi automaton.
+     * @return A Büchi automaton accepting the same language, whose states are
+     * pairs of a state of {@code gnba} and a copy number.
+     */
+    public static <Q, L> Automaton<Pair<Q, Integer>, L> toNba(MultiColorAutomaton<Q, L> gnba) {
+        return new Degeneralization<>(gnba).run();
+    }
+
+    private Automaton<Pair<Q, Integer>, L> run() {
+        Automaton<Pair<Q, Integer>, L> nba = new Automaton<>();
+        for (Q q0 : gnba.getInitialStates()) {
+            nba.setInitial(reach(q0, 0));
+        }
+
+        while (!queue.isEmpty()) {
+            int key = queue.poll();
+            int copy = key % copies;
+            Q q = states.get(key / copies);
+            Pair<Q, Integer> from = created.get(key);
+
+            nba.addState(from);
+            if (copy == 0 && (colors.isEmpty() || colors.get(0).contains(q))) {
+                nba.setAccepting(from);
+            }
+
+            int next = (colors.isEmpty() || colors.get(copy).contains(q)) ? (copy + 1) % copies : copy;
+            Map<Set<L>, Set<Q>> out = gnba.getTransitions().get(q);
+            if (out == null) {
+                continue;
+            }
+            for (Map.Entry<Set<L>, Set<Q>> edge : out.entrySet()) {
+                for (Q to : edge.getValue()) {
+                    nba.addTransition(from, edge.getKey(), reach(to, next));
+                }
+            }
+        }
+
+        return nba;
+    }
+
+    /**
+     * @return Copy {@code copy} of {@code q}, scheduling it for expansion the
+     * first time it is reached.
+     */
+    private Pair<Q, Integer> reach(Q q, int copy) {
+        Integer id = ids.get(q);
+        if (id == null) {
+            id = states.size();
+            ids.put(q, id);
+            states.add(q);
+        }
+        int key = id * copies + copy;
+        if (!queued.get(key)) {
+            queued.set(key);
+            queue.add(key);
+            created.put(key, new Pair<>(q, copy));
+        }
+        return created.get(key);
+    }
+
+}
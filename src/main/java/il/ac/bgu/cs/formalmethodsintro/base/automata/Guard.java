@@ -0,0 +1,74 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+/**
+ * A conjunction of literals over at most 64 atomic propositions (a "cube"),
+ * where proposition {@code i} is bit {@code i}. A letter, encoded the same
+ * way, satisfies the guard iff it has every bit of {@link #getPositive()}
+ * and none of {@link #getNegative()}. Propositions in neither mask are
+ * unconstrained, so a single guard stands for every letter agreeing on the
+ * constrained ones.
+ */
+public final class Guard {
+
+    /**
+     * The guard satisfied by every letter.
+     */
+    public static final Guard TRUE = new Guard(0, 0);
+
+    private final long positive;
+    private final long negative;
+
+    /**
+     * @param positive Propositions that must hold.
+     * @param negative Propositions that must not hold.
+     * @throws IllegalArgumentException If a proposition is in both masks, so
+     * that no letter can satisfy the guard.
+     */
+    public Guard(long positive, long negative) {
+        if ((positive & negative) != 0) {
+            throw new IllegalArgumentException("Guard requires propositions both to hold and not to hold: "
+                    + Long.toBinaryString(positive & negative));
+        }
+        this.positive = positive;
+        this.negative = negative;
+    }
+
+    public long getPositive() {
+        return positive;
+    }
+
+    public long getNegative() {
+        return negative;
+    }
+
+    /**
+     * @param letter The propositions that hold, as a bit mask.
+     * @return {@code true} iff {@code letter} satisfies this guard.
+     */
+    public boolean matches(long letter) {
+        return (letter & positive) == positive && (letter & negative) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(positive) * 31 + Long.hashCode(negative);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Guard)) {
+            return false;
+        }
+        Guard other = (Guard) obj;
+        return positive == other.positive && negative == other.negative;
+    }
+
+    @Override
+    public String toString() {
+        return "Guard{+" + Long.toBinaryString(positive) + ", -" + Long.toBinaryString(negative) + "}";
+    }
+
+}
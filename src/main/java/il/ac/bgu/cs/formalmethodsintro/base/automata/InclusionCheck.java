@@ -0,0 +1,371 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks whether the language of a Büchi automaton {@code A} is included in
+ * that of a Büchi automaton {@code B}, without complementing {@code B}.
+ *
+ * The check is Ramsey based. A finite word {@code v} is summarized by its
+ * graph: for each automaton, the pairs of states {@code (p,q)} such that
+ * {@code v} leads from {@code p} to {@code q}, each flagged if some path
+ * visits an accepting state. If {@code L(A)} is not included in {@code L(B)},
+ * there is a counterexample {@code u v^ω} whose cycle {@code v} has an
+ * idempotent graph, and then acceptance of {@code u v^ω} by each automaton
+ * only depends on the states reached by {@code u} and on the graph of
+ * {@code v}. So the check enumerates:
+ * <ul>
+ * <li>the pairs of state sets reachable by prefixes, keeping only an
+ * antichain: a pair with fewer {@code A} states and more {@code B} states
+ * than another one can not give a counterexample the other does not
+ * give;</li>
+ * <li>the graphs of non-empty words, built by appending letters, skipping
+ * words {@code A} can not read at all, and also keeping only an antichain: a
+ * graph with fewer {@code A} edges and more {@code B} edges than another one
+ * can not give a counterexample the other does not give, and neither can its
+ * extensions.</li>
+ * </ul>
+ * and stops at the first prefix and graph whose idempotent power {@code A}
+ * accepts and {@code B} rejects. As the graphs kept are not all idempotent,
+ * each one is checked through its idempotent power, which is the graph of a
+ * power of the same word. Only letters {@code A} has transitions for are
+ * considered.
+ *
+ * @param <Sigma> Type of the propositions the letters are made of.
+ */
+public class InclusionCheck<Sigma> {
+
+    private final List<Set<Sigma>> letters;
+    private final Side a;
+    private final Side b;
+    private final BitSet[] letterGraphs;
+
+    public InclusionCheck(Automaton<?, Sigma> a, Automaton<?, Sigma> b) {
+        Set<Set<Sigma>> alphabet = new LinkedHashSet<>();
+        for (Map<Set<Sigma>, ?> out : a.getTransitions().values()) {
+            alphabet.addAll(out.keySet());
+        }
+        letters = new ArrayList<>(alphabet);
+        this.a = new Side(a, letters, 0);
+        this.b = new Side(b, letters, this.a.end());
+
+        letterGraphs = new BitSet[letters.size()];
+        for (int i = 0; i < letters.size(); i++) {
+            BitSet graph = new BitSet();
+            this.a.addLetter(graph, i);
+            this.b.addLetter(graph, i);
+            letterGraphs[i] = graph;
+        }
+    }
+
+    /**
+     * @return A word accepted by {@code A} and rejected by {@code B}, or
+     * {@code null} if {@code L(A)} is included in {@code L(B)}.
+     */
+    public Lasso<Sigma> run() {
+        List<Word> prefixes = prefixes();
+        if (prefixes.isEmpty()) {
+            return null;
+        }
+
+        Map<BitSet, Word> graphs = new HashMap<>();
+        Set<BitSet> removed = new HashSet<>();
+        Deque<BitSet> queue = new ArrayDeque<>();
+        for (int i = 0; i < letters.size(); i++) {
+            addGraph(letterGraphs[i], new Word(null, i, null, null), graphs, removed, queue);
+        }
+
+        while (!queue.isEmpty()) {
+            BitSet graph = queue.poll();
+            if (removed.contains(graph)) {
+                continue;
+            }
+            Word cycle = graphs.get(graph);
+            BitSet idempotent = idempotentPower(graph);
+            for (Word prefix : prefixes) {
+                if (a.accepts(prefix.a, idempotent) && !b.accepts(prefix.b, idempotent)) {
+                    // u (v^k)^ω is u v^ω.
+                    return new Lasso<>(prefix.letters(letters), cycle.letters(letters));
+                }
+            }
+            for (int i = 0; i < letters.size(); i++) {
+                addGraph(compose(graph, letterGraphs[i]), new Word(cycle, i, null, null), graphs, removed, queue);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds {@code graph} to the antichain {@code graphs} unless it has no
+     * {@code A} edges or a graph there subsumes it, removing the graphs it
+     * subsumes.
+     */
+    private void addGraph(BitSet graph, Word word, Map<BitSet, Word> graphs, Set<BitSet> removed,
+            Deque<BitSet> queue) {
+        if (!a.hasEdges(graph)) {
+            return;
+        }
+        for (BitSet other : graphs.keySet()) {
+            if (subsumes(other, graph)) {
+                return;
+            }
+        }
+        for (Iterator<BitSet> it = graphs.keySet().iterator(); it.hasNext();) {
+            BitSet other = it.next();
+            if (subsumes(graph, other)) {
+                it.remove();
+                removed.add(other);
+            }
+        }
+        graphs.put(graph, word);
+        queue.add(graph);
+    }
+
+    /**
+     * @return {@code true} iff {@code big} has all the {@code A} edges and
+     * flags of {@code small}, and {@code small} has all the {@code B} edges
+     * and flags of {@code big}.
+     */
+    private boolean subsumes(BitSet big, BitSet small) {
+        BitSet onlySmall = (BitSet) small.clone();
+        onlySmall.andNot(big);
+        int bit = onlySmall.nextSetBit(0);
+        if (bit >= 0 && bit < a.end()) {
+            return false;
+        }
+        BitSet onlyBig = (BitSet) big.clone();
+        onlyBig.andNot(small);
+        return onlyBig.nextSetBit(a.end()) < 0;
+    }
+
+    /**
+     * @return The idempotent power {@code graph^k} of {@code graph}, the
+     * graph of the {@code k}-th power of its word.
+     */
+    private BitSet idempotentPower(BitSet graph) {
+        BitSet power = graph;
+        while (true) {
+            if (compose(power, power).equals(power)) {
+                return power;
+            }
+            power = compose(power, graph);
+        }
+    }
+
+    /**
+     * @return The maximal pairs of state sets reachable by a prefix, where
+     * {@code (A1,B1)} is above {@code (A2,B2)} iff {@code A1 ⊇ A2} and
+     * {@code B1 ⊆ B2}. Pairs without {@code A} states are dropped.
+     */
+    private List<Word> prefixes() {
+        List<Word> antichain = new ArrayList<>();
+        Set<Word> removed = new HashSet<>();
+        Deque<Word> queue = new ArrayDeque<>();
+        Word empty = new Word(null, -1, a.initial, b.initial);
+        if (!a.initial.isEmpty()) {
+            antichain.add(empty);
+            queue.add(empty);
+        }
+
+        while (!queue.isEmpty()) {
+            Word word = queue.poll();
+            if (removed.contains(word)) {
+                continue;
+            }
+            for (int i = 0; i < letters.size(); i++) {
+                Word next = new Word(word, i, a.post(word.a, i), b.post(word.b, i));
+                if (next.a.isEmpty() || isSubsumed(next, antichain)) {
+                    continue;
+                }
+                for (Iterator<Word> it = antichain.iterator(); it.hasNext();) {
+                    Word other = it.next();
+                    if (subsumes(next, other)) {
+                        it.remove();
+                        removed.add(other);
+                    }
+                }
+                antichain.add(next);
+                queue.add(next);
+            }
+        }
+        return antichain;
+    }
+
+    private static boolean isSubsumed(Word word, List<Word> antichain) {
+        for (Word other : antichain) {
+            if (subsumes(other, word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean subsumes(Word big, Word small) {
+        return isSubset(small.a, big.a) && isSubset(big.b, small.b);
+    }
+
+    private static boolean isSubset(BitSet small, BitSet big) {
+        BitSet rest = (BitSet) small.clone();
+        rest.andNot(big);
+        return rest.isEmpty();
+    }
+
+    private BitSet compose(BitSet first, BitSet second) {
+        BitSet result = new BitSet();
+        a.compose(first, second, result);
+        b.compose(first, second, result);
+        return result;
+    }
+
+    /**
+     * A finite word, kept as a link to the word it extends, with the state
+     * sets it leads to for prefixes.
+     */
+    private static final class Word {
+
+        final Word parent;
+        final int letter;
+        final BitSet a;
+        final BitSet b;
+
+        Word(Word parent, int letter, BitSet a, BitSet b) {
+            this.parent = parent;
+            this.letter = letter;
+            this.a = a;
+            this.b = b;
+        }
+
+        <Sigma> List<Set<Sigma>> letters(List<Set<Sigma>> alphabet) {
+            List<Set<Sigma>> result = new ArrayList<>();
+            for (Word w = this; w != null && w.letter >= 0; w = w.parent) {
+                result.add(alphabet.get(w.letter));
+            }
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+    /**
+     * One of the automata, with its states numbered, and its part of the
+     * graphs: pair {@code (p,q)} is bit {@code offset + 2(p*n+q)}, and its
+     * flag the bit after it.
+     */
+    private static final class Side {
+
+        final int size;
+        final int offset;
+        final BitSet initial = new BitSet();
+        final BitSet accepting = new BitSet();
+        final BitSet[][] post;
+
+        <Q, Sigma> Side(Automaton<Q, Sigma> aut, List<Set<Sigma>> letters, int offset) {
+            this.offset = offset;
+            Map<Q, Integer> ids = new HashMap<>();
+            for (Q q : aut.getTransitions().keySet()) {
+                ids.put(q, ids.size());
+            }
+            size = ids.size();
+            for (Q q : aut.getInitialStates()) {
+                initial.set(ids.get(q));
+            }
+            for (Q q : new HashSet<>(aut.getAcceptingStates())) {
+                accepting.set(ids.get(q));
+            }
+
+            post = new BitSet[letters.size()][size];
+            for (int i = 0; i < letters.size(); i++) {
+                for (Map.Entry<Q, Integer> state : ids.entrySet()) {
+                    BitSet successors = new BitSet();
+                    Set<Q> next = aut.getTransitions().get(state.getKey()).get(letters.get(i));
+                    if (next != null) {
+                        for (Q q : next) {
+                            successors.set(ids.get(q));
+                        }
+                    }
+                    post[i][state.getValue()] = successors;
+                }
+            }
+        }
+
+        int end() {
+            return offset + 2 * size * size;
+        }
+
+        BitSet post(BitSet states, int letter) {
+            BitSet result = new BitSet();
+            for (int p = states.nextSetBit(0); p >= 0; p = states.nextSetBit(p + 1)) {
+                result.or(post[letter][p]);
+            }
+            return result;
+        }
+
+        void addLetter(BitSet graph, int letter) {
+            for (int p = 0; p < size; p++) {
+                BitSet successors = post[letter][p];
+                for (int q = successors.nextSetBit(0); q >= 0; q = successors.nextSetBit(q + 1)) {
+                    graph.set(edge(p, q));
+                    if (accepting.get(p) || accepting.get(q)) {
+                        graph.set(edge(p, q) + 1);
+                    }
+                }
+            }
+        }
+
+        void compose(BitSet first, BitSet second, BitSet result) {
+            for (int p = 0; p < size; p++) {
+                for (int q = 0; q < size; q++) {
+                    if (!first.get(edge(p, q))) {
+                        continue;
+                    }
+                    boolean flagged = first.get(edge(p, q) + 1);
+                    for (int r = 0; r < size; r++) {
+                        if (second.get(edge(q, r))) {
+                            result.set(edge(p, r));
+                            if (flagged || second.get(edge(q, r) + 1)) {
+                                result.set(edge(p, r) + 1);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        boolean hasEdges(BitSet graph) {
+            int bit = graph.nextSetBit(offset);
+            return bit >= 0 && bit < end();
+        }
+
+        /**
+         * @return {@code true} iff {@code u v^ω} is accepted, where {@code u}
+         * leads to {@code states} and {@code v} has the idempotent graph
+         * {@code graph}: some state of {@code states} reaches a state with a
+         * flagged loop.
+         */
+        boolean accepts(BitSet states, BitSet graph) {
+            for (int p = states.nextSetBit(0); p >= 0; p = states.nextSetBit(p + 1)) {
+                for (int q = 0; q < size; q++) {
+                    if (graph.get(edge(p, q)) && graph.get(edge(q, q) + 1)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int edge(int p, int q) {
+            return offset + 2 * (p * size + q);
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An ultimately periodic word {@code u v^ω}: a finite prefix followed by a
+ * non-empty cycle repeated forever.
+ *
+ * @param <Sigma> Type of the propositions the letters are made of.
+ */
+public class Lasso<Sigma> {
+
+    private final List<Set<Sigma>> prefix;
+    private final List<Set<Sigma>> cycle;
+
+    public Lasso(List<Set<Sigma>> prefix, List<Set<Sigma>> cycle) {
+        if (cycle.isEmpty()) {
+            throw new IllegalArgumentException("The cycle of a lasso must not be empty");
+        }
+        this.prefix = Collections.unmodifiableList(prefix);
+        this.cycle = Collections.unmodifiableList(cycle);
+    }
+
+    public List<Set<Sigma>> getPrefix() {
+        return prefix;
+    }
+
+    public List<Set<Sigma>> getCycle() {
+        return cycle;
+    }
+
+    /**
+     * @return The {@code i}-th letter of the word.
+     */
+    public Set<Sigma> letterAt(int i) {
+        return (i < prefix.size()) ? prefix.get(i) : cycle.get((i - prefix.size()) % cycle.size());
+    }
+
+    @Override
+    public String toString() {
+        return prefix + " (" + cycle + ")^ω";
+    }
+
+}
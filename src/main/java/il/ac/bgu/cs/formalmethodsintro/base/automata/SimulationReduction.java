@@ -0,0 +1,263 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shrinks an automaton using direct simulation. State {@code p} directly
+ * simulates state {@code q} if {@code p} is in every color {@code q} is in,
+ * and each transition {@code q -σ-> q'} is matched by a transition
+ * {@code p -σ-> p'} where {@code p'} simulates {@code q'}. Then:
+ * <ul>
+ * <li>states simulating each other are merged;</li>
+ * <li>a transition {@code q -σ-> q'} is dropped if there is a transition
+ * {@code q -σ-> p'} where {@code p'} strictly simulates {@code q'}, and
+ * likewise for initial states;</li>
+ * <li>states that are no longer reachable are dropped.</li>
+ * </ul>
+ * All three preserve the language, for Büchi and generalized Büchi automata.
+ * Each merged state is represented by one of its states.
+ *
+ * The simulation is computed by refining the relation allowed by the colors
+ * until every pair is matched.
+ *
+ * @param <Q> Type of states.
+ * @param <L> Type of the alphabet.
+ */
+public class SimulationReduction<Q, L> {
+
+    private final MultiColorAutomaton<Q, L> aut;
+    private final List<Q> states;
+    private final Map<Q, Integer> ids = new HashMap<>();
+    private final List<Set<L>> letters;
+    private final List<Integer> colors;
+    private final BitSet[] colorSets;
+    private final int[][][] successors;
+
+    /**
+     * {@code simulators[q]} holds the states simulating {@code q}.
+     */
+    private BitSet[] simulators;
+
+    private SimulationReduction(MultiColorAutomaton<Q, L> aut) {
+        this.aut = aut;
+        states = new ArrayList<>(aut.getTransitions().keySet());
+        for (Q q : states) {
+            ids.put(q, ids.size());
+        }
+
+        Set<Set<L>> alphabet = new LinkedHashSet<>();
+        for (Map<Set<L>, Set<Q>> out : aut.getTransitions().values()) {
+            alphabet.addAll(out.keySet());
+        }
+        letters = new ArrayList<>(alphabet);
+
+        colors = new ArrayList<>(aut.getColors());
+        colorSets = new BitSet[colors.size()];
+        for (int c = 0; c < colors.size(); c++) {
+            colorSets[c] = new BitSet();
+            for (Q q : aut.getAcceptingStates(colors.get(c))) {
+                colorSets[c].set(ids.get(q));
+            }
+        }
+
+        successors = new int[letters.size()][states.size()][];
+        for (int i = 0; i < letters.size(); i++) {
+            for (int q = 0; q < states.size(); q++) {
+                Set<Q> next = aut.getTransitions().get(states.get(q)).get(letters.get(i));
+                int[] targets = new int[(next == null) ? 0 : next.size()];
+                int k = 0;
+                if (next != null) {
+                    for (Q to : next) {
+                        targets[k++] = ids.get(to);
+                    }
+                }
+                successors[i][q] = targets;
+            }
+        }
+    }
+
+    /**
+     * @return An automaton with the same language as {@code aut}, and at most
+     * as many states and transitions.
+     */
+    public static <Q, L> MultiColorAutomaton<Q, L> reduce(MultiColorAutomaton<Q, L> aut) {
+        MultiColorAutomaton<Q, L> result = new MultiColorAutomaton<>();
+        new SimulationReduction<>(aut).build(result);
+        return result;
+    }
+
+    /**
+     * @return A Büchi automaton with the same language as {@code aut}, and at
+     * most as many states and transitions.
+     */
+    public static <Q, L> Automaton<Q, L> reduce(Automaton<Q, L> aut) {
+        Automaton<Q, L> result = new Automaton<>();
+        new SimulationReduction<>(aut).build(result);
+        return result;
+    }
+
+    private void build(MultiColorAutomaton<Q, L> result) {
+        computeSimulation();
+        int n = states.size();
+
+        // Each state is represented by the smallest state equivalent to it.
+        int[] representative = new int[n];
+        for (int q = 0; q < n; q++) {
+            representative[q] = q;
+            for (int p = simulators[q].nextSetBit(0); p >= 0 && p < q; p = simulators[q].nextSetBit(p + 1)) {
+                if (simulators[p].get(q)) {
+                    representative[q] = p;
+                    break;
+                }
+            }
+        }
+
+        for (int color : colors) {
+            // Keep every color, even if no remaining state is in it.
+            result.getAcceptingStates(color);
+        }
+
+        Set<Integer> initial = new LinkedHashSet<>();
+        for (Q q0 : aut.getInitialStates()) {
+            initial.add(representative[ids.get(q0)]);
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        BitSet reached = new BitSet();
+        for (int q0 : maximal(initial)) {
+            result.setInitial(states.get(q0));
+            reached.set(q0);
+            queue.add(q0);
+        }
+
+        // Members of each merged state, to collect their transitions.
+        Map<Integer, List<Integer>> members = new HashMap<>();
+        for (int q = 0; q < n; q++) {
+            members.computeIfAbsent(representative[q], r -> new ArrayList<>()).add(q);
+        }
+
+        while (!queue.isEmpty()) {
+            int rep = queue.poll();
+            Q from = states.get(rep);
+            result.addState(from);
+            for (int c = 0; c < colors.size(); c++) {
+                if (colorSets[c].get(rep)) {
+                    result.setAccepting(from, colors.get(c));
+                }
+            }
+
+            for (int i = 0; i < letters.size(); i++) {
+                Set<Integer> targets = new LinkedHashSet<>();
+                for (int q : members.get(rep)) {
+                    for (int to : successors[i][q]) {
+                        targets.add(representative[to]);
+                    }
+                }
+                for (int to : maximal(targets)) {
+                    result.addTransition(from, letters.get(i), states.get(to));
+                    if (!reached.get(to)) {
+                        reached.set(to);
+                        queue.add(to);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The states of {@code candidates} that no other candidate
+     * strictly simulates. Candidates must be representatives, so no two of
+     * them are equivalent.
+     */
+    private List<Integer> maximal(Set<Integer> candidates) {
+        List<Integer> result = new ArrayList<>();
+        for (int q : candidates) {
+            boolean dominated = false;
+            for (int p : candidates) {
+                if (p != q && simulators[q].get(p)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                result.add(q);
+            }
+        }
+        return result;
+    }
+
+    private void computeSimulation() {
+        int n = states.size();
+        simulators = new BitSet[n];
+        for (int q = 0; q < n; q++) {
+            simulators[q] = new BitSet(n);
+            for (int p = 0; p < n; p++) {
+                if (coversColors(p, q) && coversLetters(p, q)) {
+                    simulators[q].set(p);
+                }
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int q = 0; q < n; q++) {
+                for (int p = simulators[q].nextSetBit(0); p >= 0; p = simulators[q].nextSetBit(p + 1)) {
+                    if (!matches(p, q)) {
+                        simulators[q].clear(p);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean coversColors(int p, int q) {
+        for (BitSet colorSet : colorSets) {
+            if (colorSet.get(q) && !colorSet.get(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean coversLetters(int p, int q) {
+        for (int i = 0; i < letters.size(); i++) {
+            if (successors[i][q].length > 0 && successors[i][p].length == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} iff every transition of {@code q} is matched by a
+     * transition of {@code p} to a state simulating its target, under the
+     * current relation.
+     */
+    private boolean matches(int p, int q) {
+        for (int i = 0; i < letters.size(); i++) {
+            for (int qNext : successors[i][q]) {
+                boolean matched = false;
+                for (int pNext : successors[i][p]) {
+                    if (simulators[qNext].get(pNext)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
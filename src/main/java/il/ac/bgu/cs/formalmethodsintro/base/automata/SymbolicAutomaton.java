@@ -0,0 +1,196 @@
+package il.ac.bgu.cs.formalmethodsintro.base.automata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A generalized Büchi automaton whose transitions are labeled with
+ * {@link Guard}s instead of explicit sets of propositions. A transition with
+ * a guard over {@code k} of the automaton's {@code n} propositions stands for
+ * the {@code 2^(n-k)} transitions of a {@link MultiColorAutomaton} over the
+ * letters satisfying it, so automata over many propositions stay small.
+ *
+ * The automaton keeps the propositions it has seen, giving each a bit of the
+ * guards; there can be at most 64. Letters are sets of propositions, and
+ * propositions the automaton does not know are ignored when reading them, so
+ * the automaton can read the labels of a transition system with more
+ * propositions than it mentions.
+ *
+ * @param <State> Type of states.
+ * @param <L> Type of the atomic propositions.
+ */
+public class SymbolicAutomaton<State, L> {
+
+    /**
+     * A transition, without its source state.
+     */
+    public static final class Edge<State> {
+
+        private final Guard guard;
+        private final State destination;
+
+        Edge(Guard guard, State destination) {
+            this.guard = guard;
+            this.destination = destination;
+        }
+
+        public Guard getGuard() {
+            return guard;
+        }
+
+        public State getDestination() {
+            return destination;
+        }
+
+        @Override
+        public String toString() {
+            return "-" + guard + "-> " + destination;
+        }
+    }
+
+    private final List<L> propositions = new ArrayList<>();
+    private final Map<L, Integer> bits = new HashMap<>();
+
+    private final Set<State> initial = new HashSet<>();
+    private final Map<Integer, Set<State>> accepting = new HashMap<>();
+    private final Map<State, List<Edge<State>>> transitions = new HashMap<>();
+
+    /**
+     * @param ap An atomic proposition.
+     * @return The bit of {@code ap} in guards and letters, adding it if it is
+     * new.
+     * @throws IllegalArgumentException If the automaton already has 64
+     * propositions.
+     */
+    public int propositionBit(L ap) {
+        Integer bit = bits.get(ap);
+        if (bit == null) {
+            if (propositions.size() == Long.SIZE) {
+                throw new IllegalArgumentException("At most " + Long.SIZE + " propositions are supported, cannot add "
+                        + ap);
+            }
+            bit = propositions.size();
+            propositions.add(ap);
+            bits.put(ap, bit);
+        }
+        return bit;
+    }
+
+    /**
+     * @return The propositions of the automaton; proposition {@code i} is
+     * bit {@code i}.
+     */
+    public List<L> getPropositions() {
+        return Collections.unmodifiableList(propositions);
+    }
+
+    /**
+     * @param mustHold Propositions that must hold.
+     * @param mustNotHold Propositions that must not hold.
+     * @return The guard for the letters containing {@code mustHold} and
+     * disjoint from {@code mustNotHold}.
+     */
+    public Guard guard(Set<L> mustHold, Set<L> mustNotHold) {
+        long positive = 0;
+        for (L ap : mustHold) {
+            positive |= 1L << propositionBit(ap);
+        }
+        long negative = 0;
+        for (L ap : mustNotHold) {
+            negative |= 1L << propositionBit(ap);
+        }
+        return new Guard(positive, negative);
+    }
+
+    /**
+     * @param letter A set of propositions.
+     * @return {@code letter} as a bit mask, ignoring the propositions the
+     * automaton does not know.
+     */
+    public long encode(Set<L> letter) {
+        long mask = 0;
+        for (L ap : letter) {
+            Integer bit = bits.get(ap);
+            if (bit != null) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    public void addState(State s) {
+        if (!transitions.containsKey(s)) {
+            transitions.put(s, new ArrayList<>());
+        }
+    }
+
+    public void addTransition(State source, Guard guard, State destination) {
+        addState(source);
+        addState(destination);
+        transitions.get(source).add(new Edge<>(guard, destination));
+    }
+
+    /**
+     * @return The transitions leaving {@code source}.
+     */
+    public List<Edge<State>> getEdges(State source) {
+        List<Edge<State>> edges = transitions.get(source);
+        if (edges == null) {
+            throw new IllegalArgumentException("Unknown state " + source);
+        }
+        return Collections.unmodifiableList(edges);
+    }
+
+    /**
+     * @param source A state.
+     * @param letter A letter, as encoded by {@link #encode(Set)}.
+     * @return The states reachable from {@code source} by reading
+     * {@code letter}.
+     */
+    public Set<State> nextStates(State source, long letter) {
+        Set<State> result = new LinkedHashSet<>();
+        for (Edge<State> edge : getEdges(source)) {
+            if (edge.guard.matches(letter)) {
+                result.add(edge.destination);
+            }
+        }
+        return result;
+    }
+
+    public Set<State> nextStates(State source, Set<L> letter) {
+        return nextStates(source, encode(letter));
+    }
+
+    public Set<State> getStates() {
+        return Collections.unmodifiableSet(transitions.keySet());
+    }
+
+    public Set<State> getInitialStates() {
+        return initial;
+    }
+
+    public void setInitial(State s) {
+        addState(s);
+        initial.add(s);
+    }
+
+    public Set<State> getAcceptingStates(int color) {
+        return accepting.computeIfAbsent(color, c -> new HashSet<>());
+    }
+
+    public void setAccepting(State s, int color) {
+        addState(s);
+        getAcceptingStates(color).add(s);
+    }
+
+    public Set<Integer> getColors() {
+        return accepting.keySet();
+    }
+
+}
@@ -0,0 +1,204 @@
+package il.ac.bgu.cs.formalmethodsintro.base.channelsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGSuccessorGenerator;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Util;
+
+/**
+ * Presents a {@link ChannelSystem} as a program graph over location vectors,
+ * without building that graph. The transitions leaving a location vector are
+ * computed when asked for, from the transitions leaving each component
+ * location:
+ * <ul>
+ * <li>A transition of one component whose action is not one-sided moves that
+ * component only.</li>
+ * <li>Two one-sided transitions of different components, reading from and
+ * writing to the same channel, move both components together, with the joined
+ * action {@code left|right} and the conjunction of their conditions.</li>
+ * </ul>
+ * As in a single program graph, a system with one component takes all its
+ * transitions as they are.
+ *
+ * Instances can be used by several threads at once.
+ *
+ * @param <L> Type of the component locations.
+ * @param <A> Type of the actions.
+ */
+public class ChannelSystemSuccessors<L, A> implements PGSuccessorGenerator<List<L>, A> {
+
+    private final List<ProgramGraph<L, A>> components;
+    private final InterleavingActDef interleavingActDef;
+
+    /**
+     * Per component, the outgoing transitions of each location that were
+     * already classified.
+     */
+    private final List<Map<L, Classified<L, A>>> classified = new ArrayList<>();
+
+    public ChannelSystemSuccessors(ChannelSystem<L, A> cs) {
+        this(cs, new ParserBasedInterleavingActDef());
+    }
+
+    public ChannelSystemSuccessors(ChannelSystem<L, A> cs, InterleavingActDef interleavingActDef) {
+        this.components = new ArrayList<>(cs.getProgramGraphs());
+        this.interleavingActDef = interleavingActDef;
+        for (int i = 0; i < components.size(); i++) {
+            classified.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @return All combinations of the components' initial locations.
+     */
+    @Override
+    public Set<List<L>> getInitialLocations() {
+        Set<List<L>> result = new LinkedHashSet<>();
+        addInitialLocations(new ArrayList<>(), result);
+        return result;
+    }
+
+    /**
+     * @return All concatenations of one initialization list of each component
+     * that has initializations.
+     */
+    @Override
+    public Set<List<String>> getInitalizations() {
+        Set<List<String>> result = new LinkedHashSet<>();
+        for (ProgramGraph<L, A> pg : components) {
+            if (pg.getInitalizations().isEmpty()) {
+                continue;
+            }
+            if (result.isEmpty()) {
+                result.addAll(pg.getInitalizations());
+            } else {
+                Set<List<String>> extended = new LinkedHashSet<>();
+                for (List<String> prefix : result) {
+                    for (List<String> init : pg.getInitalizations()) {
+                        List<String> concatenated = new ArrayList<>(prefix);
+                        concatenated.addAll(init);
+                        extended.add(concatenated);
+                    }
+                }
+                result = extended;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<PGTransition<List<L>, A>> getOutgoingTransitions(List<L> location) {
+        if (location.size() != components.size()) {
+            throw new IllegalArgumentException("Location " + location + " does not have a location for each of the "
+                    + components.size() + " components");
+        }
+
+        List<PGTransition<List<L>, A>> result = new ArrayList<>();
+        List<Classified<L, A>> local = new ArrayList<>(components.size());
+        for (int i = 0; i < components.size(); i++) {
+            Classified<L, A> c = classify(i, location.get(i));
+            local.add(c);
+            for (PGTransition<L, A> t : c.moves) {
+                result.add(new PGTransition<>(location, t.getCondition(), t.getAction(), replace(location, i, t.getTo())));
+            }
+        }
+
+        for (int i = 0; i < components.size(); i++) {
+            for (PGTransition<L, A> left : local.get(i).oneSided) {
+                for (int j = i + 1; j < components.size(); j++) {
+                    for (PGTransition<L, A> right : local.get(j).oneSided) {
+                        A action = getHandShakeAction(left.getAction(), right.getAction());
+                        if (action != null) {
+                            List<L> to = replace(replace(location, i, left.getTo()), j, right.getTo());
+                            result.add(new PGTransition<>(location,
+                                    Util.mergeConditions(left.getCondition(), right.getCondition()), action, to));
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void addInitialLocations(List<L> prefix, Set<List<L>> result) {
+        if (prefix.size() == components.size()) {
+            result.add(Collections.unmodifiableList(new ArrayList<>(prefix)));
+            return;
+        }
+        for (L l : components.get(prefix.size()).getInitialLocations()) {
+            prefix.add(l);
+            addInitialLocations(prefix, result);
+            prefix.remove(prefix.size() - 1);
+        }
+    }
+
+    private Classified<L, A> classify(int component, L location) {
+        return classified.get(component).computeIfAbsent(location, l -> {
+            Classified<L, A> c = new Classified<>();
+            for (PGTransition<L, A> t : components.get(component).getOutgoingTransitions(l)) {
+                if (components.size() > 1 && interleavingActDef.isOneSidedAction(t.getAction().toString())) {
+                    c.oneSided.add(t);
+                } else {
+                    c.moves.add(t);
+                }
+            }
+            return c;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<L> replace(List<L> location, int index, L component) {
+        Object[] items = location.toArray();
+        items[index] = component;
+        return Collections.unmodifiableList(Arrays.asList((L[]) items));
+    }
+
+    /**
+     * @return The joined action of a read and a write on the same channel
+     * ({@code left|right}), or {@code null} if the actions do not match.
+     */
+    @SuppressWarnings("unchecked")
+    static <A> A getHandShakeAction(A leftAction, A rightAction) {
+        if (!(leftAction instanceof String && rightAction instanceof String)) {
+            return null;
+        }
+
+        String left = (String) leftAction;
+        String right = (String) rightAction;
+        String[][] acceptable = {{"?", "!"}, {"!", "?"}};
+
+        for (String[] ops : acceptable) {
+            if (left.contains(ops[0]) && right.contains(ops[1])) {
+                String channelNameLeft = left.substring(0, left.indexOf(ops[0]));
+                String channelNameRight = right.substring(0, right.indexOf(ops[1]));
+                if (channelNameRight.equals(channelNameLeft)) {
+                    return (A) (left + "|" + right);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The transitions leaving a component location, split by whether they
+     * can be taken alone.
+     */
+    private static final class Classified<L, A> {
+
+        final List<PGTransition<L, A>> moves = new ArrayList<>();
+        final List<PGTransition<L, A>> oneSided = new ArrayList<>();
+    }
+
+}
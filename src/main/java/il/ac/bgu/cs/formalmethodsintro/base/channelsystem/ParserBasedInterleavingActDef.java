@@ -2,14 +2,7 @@ package il.ac.bgu.cs.formalmethodsintro.base.channelsystem;
 
 import java.util.Map;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.Evaluator;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaLexer;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.JoinedContext;
-import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ThrowingErrorListener;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParseCache;
 
 /**
  * A class for identifying and interpreting combined actions such as
@@ -17,6 +10,8 @@ import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ThrowingErrorListener;
  * writing to channels with zero capacity separated by the '|' character.
  * Channels with zero capacity are marked by an underscore in front of the
  * channel name.
+ *
+ * Actions are parsed and compiled once, and cached, see {@link NanoPromelaParseCache}.
  */
 public class ParserBasedInterleavingActDef implements InterleavingActDef {
 
@@ -27,69 +22,20 @@ public class ParserBasedInterleavingActDef implements InterleavingActDef {
         }
 
         try {
-            return new Evaluator(eval).evaluate(parseAction((String) action));
+            return NanoPromelaParseCache.compiledJoinedAction((String) action).evaluate(eval);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    /**
-     * Parse a string and build a parse tree for a joined action.
-     *
-     * @param action The string to parse.
-     *
-     * @return The root of the parse tree or null if cannot parse.
-     */
-    private JoinedContext parseAction(String action) {
-        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(action));
-
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        NanoPromelaParser parser = new NanoPromelaParser(tokens);
-
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new ThrowingErrorListener());
-
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ThrowingErrorListener());
-
-        try {
-            JoinedContext p = parser.joined();
-
-            if (parser.isMatchedEOF()) {
-                return p;
-            } else {
-                return null;
-            }
-
-        } catch (Exception ex) {
-            return null;
-        }
-    }
-
     @Override
     public boolean isMatchingAction(Object action) {
-        return action.equals("") || parseAction((String) action) != null;
+        return action.equals("") || NanoPromelaParseCache.joinedAction((String) action) != null;
     }
 
     @Override
     public boolean isOneSidedAction(String action) {
-        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(action));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        NanoPromelaParser parser = new NanoPromelaParser(tokens);
-
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new ThrowingErrorListener());
-
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ThrowingErrorListener());
-
-        try {
-            parser.onesided();
-            return parser.isMatchedEOF();
-        } catch (Exception e) {
-            return false;
-        }
-
+        return NanoPromelaParseCache.isOneSidedAction(action);
     }
 }
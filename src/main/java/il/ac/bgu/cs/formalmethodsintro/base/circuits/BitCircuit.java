@@ -0,0 +1,134 @@
+package il.ac.bgu.cs.formalmethodsintro.base.circuits;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Circuit} that computes on bit vectors packed into {@code long}s.
+ * Bit {@code i} of an input vector holds the value of the {@code i}-th name
+ * of {@link #getInputPortNames()}, in its iteration order; registers and
+ * outputs are packed the same way. The name sets must therefore always be
+ * iterated in the same order, and hold at most 64 names each.
+ *
+ * Implementing the two bit-vector methods is enough: the map-based methods of
+ * {@link Circuit} are derived from them.
+ */
+public interface BitCircuit extends Circuit {
+
+    /**
+     * @param inputs Input values, packed.
+     * @param registers Register values, packed.
+     * @return Register values for the next phase, packed.
+     */
+    long updateRegisters(long inputs, long registers);
+
+    /**
+     * @param inputs Input values, packed.
+     * @param registers Register values, packed.
+     * @return Output values, packed.
+     */
+    long computeOutputs(long inputs, long registers);
+
+    @Override
+    default Map<String, Boolean> updateRegisters(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+        return unpack(getRegisterNames(), updateRegisters(pack(getInputPortNames(), inputs),
+                pack(getRegisterNames(), registers)));
+    }
+
+    @Override
+    default Map<String, Boolean> computeOutputs(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+        return unpack(getOutputPortNames(), computeOutputs(pack(getInputPortNames(), inputs),
+                pack(getRegisterNames(), registers)));
+    }
+
+    /**
+     * @param c A circuit.
+     * @return {@code c} itself if it is a {@link BitCircuit}, or else a view of
+     * it that packs and unpacks the values passed to it.
+     * @throws IllegalArgumentException if {@code c} has more than 64 inputs,
+     * registers or outputs.
+     */
+    static BitCircuit of(Circuit c) {
+        if (c instanceof BitCircuit) {
+            return (BitCircuit) c;
+        }
+        for (Set<String> names : List.of(c.getInputPortNames(), c.getRegisterNames(), c.getOutputPortNames())) {
+            if (names.size() > Long.SIZE) {
+                throw new IllegalArgumentException("Cannot pack " + names.size() + " values into a long");
+            }
+        }
+        return new BitCircuit() {
+            @Override
+            public Set<String> getInputPortNames() {
+                return c.getInputPortNames();
+            }
+
+            @Override
+            public Set<String> getRegisterNames() {
+                return c.getRegisterNames();
+            }
+
+            @Override
+            public Set<String> getOutputPortNames() {
+                return c.getOutputPortNames();
+            }
+
+            @Override
+            public long updateRegisters(long inputs, long registers) {
+                return pack(getRegisterNames(), c.updateRegisters(unpack(getInputPortNames(), inputs),
+                        unpack(getRegisterNames(), registers)));
+            }
+
+            @Override
+            public long computeOutputs(long inputs, long registers) {
+                return pack(getOutputPortNames(), c.computeOutputs(unpack(getInputPortNames(), inputs),
+                        unpack(getRegisterNames(), registers)));
+            }
+
+            @Override
+            public Map<String, Boolean> updateRegisters(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                return c.updateRegisters(inputs, registers);
+            }
+
+            @Override
+            public Map<String, Boolean> computeOutputs(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                return c.computeOutputs(inputs, registers);
+            }
+        };
+    }
+
+    /**
+     * @param names Names of the values, in bit order.
+     * @param values Values by name; missing names are {@code false}.
+     * @return The values, packed.
+     */
+    static long pack(Set<String> names, Map<String, Boolean> values) {
+        long bits = 0;
+        int bit = 0;
+        for (String name : names) {
+            if (Boolean.TRUE.equals(values.get(name))) {
+                bits |= 1L << bit;
+            }
+            bit++;
+        }
+        return bits;
+    }
+
+    /**
+     * @param names Names of the values, in bit order.
+     * @param bits Packed values.
+     * @return A new map from each name to its value.
+     */
+    static Map<String, Boolean> unpack(Set<String> names, long bits) {
+        Map<String, Boolean> values = new LinkedHashMap<>();
+        int bit = 0;
+        for (String name : names) {
+            values.put(name, (bits & (1L << bit)) != 0);
+            bit++;
+        }
+        return values;
+    }
+
+}
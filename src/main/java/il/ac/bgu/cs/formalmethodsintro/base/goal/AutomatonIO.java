@@ -1,17 +1,19 @@
 package il.ac.bgu.cs.formalmethodsintro.base.goal;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
@@ -26,7 +28,29 @@ import il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.TransitionSet.Tra
 
 public class AutomatonIO {
 
+    /**
+     * Creating a JAXB context is slow, and contexts are thread safe, so a
+     * single one is created on first use.
+     */
+    private static final class JaxbHolder {
+
+        static final JAXBContext CONTEXT;
+
+        static {
+            try {
+                CONTEXT = JAXBContext.newInstance("il.ac.bgu.cs.formalmethodsintro.base.goal");
+            } catch (JAXBException ex) {
+                throw new ExceptionInInitializerError(ex);
+            }
+        }
+    }
+
     public static <State, L> void write(Automaton<State, L> aut, String file) throws Exception {
+        Marshaller marshaller = JaxbHolder.CONTEXT.createMarshaller();
+        marshaller.marshal(toGoalStructure(aut), new File(file));
+    }
+
+    public static <State, L> GoalStructure toGoalStructure(Automaton<State, L> aut) {
         GoalStructure gs = new GoalStructure();
 
         gs.setLabelOn("Transition");
@@ -45,70 +69,66 @@ public class AutomatonIO {
         gs.transitionSet = new TransitionSet();
         gs.transitionSet.setComplete("false");
 
-        gs.stateSet.state = new NoDuplicatesList<>();
-        gs.alphabet.proposition = new NoDuplicatesList<>();
-        gs.acc.stateID = new NoDuplicatesList<>();
-        gs.transitionSet.transition = new NoDuplicatesList<>();
-
-        Set<L> symbols = new HashSet<>();
-
-        for (Entry<State, Map<Set<L>, Set<State>>> ent : aut.getTransitions().entrySet()) {
+        gs.stateSet.state = new ArrayList<>();
+        gs.alphabet.proposition = new ArrayList<>();
+        gs.acc.stateID = new ArrayList<>();
+        gs.transitionSet.transition = new ArrayList<>();
 
-            for (Entry<Set<L>, Set<State>> tr : ent.getValue().entrySet()) {
-                Set<L> symbol = tr.getKey();
+        // GOAL ids of the states, 0 being the added initial state.
+        Map<State, Long> ids = new HashMap<>();
+        Function<State, Long> idOf = s -> ids.computeIfAbsent(s, k -> (long) ids.size() + 1);
 
-                for (L s : symbol) {
-                    gs.alphabet.proposition.add(s.toString());
-                    symbols.add(s);
-                }
+        Set<L> symbols = new LinkedHashSet<>();
+        for (Map<Set<L>, Set<State>> out : aut.getTransitions().values()) {
+            for (Set<L> symbol : out.keySet()) {
+                symbols.addAll(symbol);
             }
         }
+        for (L s : symbols) {
+            gs.alphabet.proposition.add(s.toString());
+        }
 
+        Set<Long> listedStates = new HashSet<>();
         long tid = 1;
         for (Entry<State, Map<Set<L>, Set<State>>> ent : aut.getTransitions().entrySet()) {
             State source = ent.getKey();
-
-            il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
-            stt.setSid(IdAssignner.getId(source));
-            stt.setLabel(source.toString());
-
-            gs.stateSet.state.add(stt);
+            long sourceId = idOf.apply(source);
+            boolean initial = aut.getInitialStates().contains(source);
+            addState(gs, listedStates, sourceId, source);
 
             for (Entry<Set<L>, Set<State>> tr : ent.getValue().entrySet()) {
 
                 Set<L> symbol = tr.getKey();
 
-                String label = "";
+                StringBuilder sb = new StringBuilder();
                 for (L s : symbol) {
-                    label += s + " ";
+                    sb.append(s).append(' ');
                 }
 
                 for (L s : symbols) {
                     if (!symbol.contains(s)) {
-                        label += "~" + s + " ";
+                        sb.append('~').append(s).append(' ');
                     }
                 }
+                String label = sb.toString();
 
                 for (State destination : tr.getValue()) {
-                    stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
-                    stt.setSid(IdAssignner.getId(destination));
-                    stt.setLabel(destination.toString());
-
-                    gs.stateSet.state.add(stt);
+                    long destinationId = idOf.apply(destination);
+                    addState(gs, listedStates, destinationId, destination);
 
                     // Transition
                     Transition tran = new Transition();
-                    tran.setFrom(IdAssignner.getId(source));
-                    tran.setTo(IdAssignner.getId(destination));
+                    tran.setFrom(sourceId);
+                    tran.setTo(destinationId);
                     tran.label = label;
                     tran.tid = tid++;
                     gs.transitionSet.transition.add(tran);
 
                     // If this is an initial state, copy the transition
-                    if (aut.getInitialStates().contains(source)) {
+                    if (initial) {
                         Transition tran1 = new Transition();
                         tran1.setFrom(0L);
-                        tran1.setTo(IdAssignner.getId(destination));
+                        tran1.setTo(destinationId);
                         tran1.label = label;
                         tran1.tid = tid++;
                         gs.transitionSet.transition.add(tran1);
@@ -118,27 +138,34 @@ public class AutomatonIO {
             }
         }
 
+        Set<Long> accepting = new LinkedHashSet<>();
         for (State s : aut.getAcceptingStates()) {
-            gs.acc.stateID.add(IdAssignner.getId(s));
+            accepting.add(idOf.apply(s));
         }
+        gs.acc.stateID.addAll(accepting);
 
         // Add a single initial state
         il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
-        stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
         stt.setSid(0L);
         stt.setLabel("initial");
         gs.stateSet.state.add(stt);
         gs.initialStateSet.stateID = 0L;
 
-        JAXBContext jc = JAXBContext.newInstance("il.ac.bgu.cs.formalmethodsintro.base.goal");
-        Marshaller marshaller = jc.createMarshaller();
-        marshaller.marshal(gs, new File(file));
+        return gs;
+    }
+
+    private static void addState(GoalStructure gs, Set<Long> listed, long sid, Object state) {
+        if (listed.add(sid)) {
+            il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State stt = new il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure.StateSet.State();
+            stt.setSid(sid);
+            stt.setLabel(state.toString());
+            gs.stateSet.state.add(stt);
+        }
     }
 
     public static MultiColorAutomaton<String, String> read(String file) throws Exception {
 
-        JAXBContext jc = JAXBContext.newInstance("il.ac.bgu.cs.formalmethodsintro.base.goal");
-        Unmarshaller unmarshaller = jc.createUnmarshaller();
+        Unmarshaller unmarshaller = JaxbHolder.CONTEXT.createUnmarshaller();
         GoalStructure gs = (GoalStructure) unmarshaller.unmarshal(new File(file));
 
         MultiColorAutomaton<String, String> aut = new MultiColorAutomaton<>();
@@ -173,50 +200,3 @@ public class AutomatonIO {
     }
 
 }
-
-@SuppressWarnings("serial")
-class NoDuplicatesList<E> extends LinkedList<E> {
-
-    @Override
-    public boolean add(E e) {
-        if (this.contains(e)) {
-            return false;
-        } else {
-            return super.add(e);
-        }
-    }
-
-    @Override
-    public boolean addAll(Collection<? extends E> collection) {
-        Collection<E> copy = new LinkedList<>(collection);
-        copy.removeAll(this);
-        return super.addAll(copy);
-    }
-
-    @Override
-    public boolean addAll(int index, Collection<? extends E> collection) {
-        Collection<E> copy = new LinkedList<>(collection);
-        copy.removeAll(this);
-        return super.addAll(index, copy);
-    }
-
-    @Override
-    public void add(int index, E element) {
-        if (!this.contains(element)) {
-            super.add(index, element);
-        }
-    }
-}
-
-class IdAssignner {
-
-    private static long lastId = 1;
-    private static final Map<Object, Long> ID_MAP = new HashMap<>();
-
-    static long getId(Object o) {
-        if (!ID_MAP.containsKey(o)) {
-            ID_MAP.put(o, lastId++);
-        }
-        return ID_MAP.get(o);
-    }
-}
@@ -0,0 +1,156 @@
+package il.ac.bgu.cs.formalmethodsintro.base.goal;
+
+import static java.util.Arrays.asList;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.svvrl.goal.cmd.Context;
+import org.svvrl.goal.cmd.EquivalenceCommand;
+import org.svvrl.goal.cmd.EvaluationException;
+import org.svvrl.goal.cmd.Expression;
+import org.svvrl.goal.cmd.Lval;
+import org.svvrl.goal.cmd.TranslateCommand;
+import org.svvrl.goal.core.aut.AlphabetType;
+import org.svvrl.goal.core.aut.BuchiAcc;
+import org.svvrl.goal.core.aut.Position;
+import org.svvrl.goal.core.aut.fsa.FSA;
+import org.svvrl.goal.core.aut.fsa.FSAState;
+import org.svvrl.goal.core.aut.opt.RefinedSimulation;
+import org.svvrl.goal.core.aut.opt.RefinedSimulation2;
+import org.svvrl.goal.core.aut.opt.SimulationRepository;
+import org.svvrl.goal.core.comp.ComplementRepository;
+import org.svvrl.goal.core.comp.piterman.PitermanConstruction;
+import org.svvrl.goal.core.logic.ParseException;
+import org.svvrl.goal.core.logic.Proposition;
+import org.svvrl.goal.core.logic.qptl.QPTL;
+import org.svvrl.goal.core.logic.qptl.QPTLParser;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+
+/**
+ * Language equivalence checks done by GOAL, in memory. Automata are built as
+ * GOAL automata and formulas are parsed directly, rather than written to
+ * files and loaded back. The simulation and complementation algorithms GOAL
+ * needs are registered once, when the class is first used.
+ *
+ * GOAL keeps its algorithms in static repositories, so checks are run one at
+ * a time.
+ */
+public final class GoalEquivalence {
+
+    private static final Object LOCK = new Object();
+
+    static {
+        SimulationRepository.addSimulation2("RefinedSimilarity", FSA.class, RefinedSimulation2.class);
+        SimulationRepository.addSimulation("RefinedSimilarity", FSA.class, RefinedSimulation.class);
+        ComplementRepository.add("Safra-Piterman Construction", PitermanConstruction.class);
+    }
+
+    private GoalEquivalence() {
+    }
+
+    /**
+     * @param aut An automaton.
+     * @param qptl A QPTL formula, in GOAL syntax.
+     * @return {@code true} iff {@code aut} accepts exactly the words
+     * satisfying {@code qptl}.
+     * @throws IllegalArgumentException if {@code qptl} can not be parsed.
+     * @throws IllegalStateException if GOAL fails to check the equivalence.
+     */
+    public static <L> boolean isEquivalentToFormula(Automaton<?, L> aut, String qptl) {
+        QPTL formula;
+        try {
+            formula = new QPTLParser().parse(qptl);
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Invalid QPTL formula: " + qptl, ex);
+        }
+        FSA automaton = toFsa(aut);
+        synchronized (LOCK) {
+            Context context = new Context();
+            Lval lval1 = put(context, "th", automaton);
+            Lval lval3 = put(context, "fo", formula);
+            try {
+                TranslateCommand tc = new TranslateCommand(asList(lval3));
+                return (Boolean) new EquivalenceCommand(asList(lval1, tc)).eval(context);
+            } catch (EvaluationException ex) {
+                throw new IllegalStateException("GOAL could not check equivalence to " + qptl, ex);
+            }
+        }
+    }
+
+    /**
+     * @return {@code aut} as a GOAL automaton, labeled like
+     * {@link AutomatonIO#toGoalStructure(Automaton)} labels it: the
+     * transitions of the initial states are copied to a single added initial
+     * state.
+     */
+    private static <State, L> FSA toFsa(Automaton<State, L> aut) {
+        Set<L> symbols = new LinkedHashSet<>();
+        for (Map<Set<L>, Set<State>> out : aut.getTransitions().values()) {
+            for (Set<L> symbol : out.keySet()) {
+                symbols.addAll(symbol);
+            }
+        }
+
+        FSA fsa = new FSA(AlphabetType.PROPOSITIONAL, Position.OnTransition);
+        Proposition[] propositions = new Proposition[symbols.size()];
+        int i = 0;
+        for (L s : symbols) {
+            propositions[i++] = new Proposition(s.toString());
+        }
+        fsa.expandAlphabet(propositions);
+
+        FSAState initial = fsa.createState();
+        fsa.setInitialState(initial);
+        Map<State, FSAState> states = new HashMap<>();
+        for (State s : aut.getTransitions().keySet()) {
+            states.put(s, fsa.createState());
+        }
+
+        for (Entry<State, Map<Set<L>, Set<State>>> ent : aut.getTransitions().entrySet()) {
+            FSAState source = states.get(ent.getKey());
+            boolean isInitial = aut.getInitialStates().contains(ent.getKey());
+            for (Entry<Set<L>, Set<State>> tr : ent.getValue().entrySet()) {
+                String label = label(tr.getKey(), symbols);
+                for (State destination : tr.getValue()) {
+                    fsa.createTransition(source, states.get(destination), label);
+                    if (isInitial) {
+                        fsa.createTransition(initial, states.get(destination), label);
+                    }
+                }
+            }
+        }
+
+        BuchiAcc acc = new BuchiAcc();
+        for (State s : aut.getAcceptingStates()) {
+            acc.add(states.get(s));
+        }
+        fsa.setAcc(acc);
+        return fsa;
+    }
+
+    private static <L> String label(Set<L> symbol, Set<L> symbols) {
+        StringBuilder sb = new StringBuilder();
+        for (L s : symbols) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            if (!symbol.contains(s)) {
+                sb.append('~');
+            }
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static Lval put(Context context, String name, Object value) {
+        Lval lval = new Lval(name, new Expression[]{});
+        context.put(lval, value);
+        return lval;
+    }
+
+}
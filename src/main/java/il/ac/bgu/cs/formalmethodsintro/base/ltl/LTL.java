@@ -23,6 +23,10 @@ public abstract class LTL<L> {
         return new Next<>(l);
     }
 
+    public static <L> AP<L> ap(L name) {
+        return new AP<>(name);
+    }
+
     public static <L> LTL<L> true_() {
         return new TRUE<>();
     }
@@ -0,0 +1,144 @@
+package il.ac.bgu.cs.formalmethodsintro.base.ltl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.IntArrayList;
+
+/**
+ * The subformulas of LTL formulas, hash-consed: structurally equal
+ * subformulas get the same integer id, so sets of subformulas can be kept as
+ * bit sets. Ids are assigned children first, so a formula's id is greater
+ * than the ids of its subformulas. Double negations are removed, so
+ * {@code !!f} gets the id of {@code f}.
+ *
+ * @param <L> The type of the atomic propositions.
+ */
+public class LtlClosure<L> {
+
+    public static final int TRUE = 0;
+    public static final int AP = 1;
+    public static final int NOT = 2;
+    public static final int AND = 3;
+    public static final int NEXT = 4;
+    public static final int UNTIL = 5;
+
+    private final List<LTL<L>> formulas = new ArrayList<>();
+    private final IntArrayList kinds = new IntArrayList();
+    private final IntArrayList lefts = new IntArrayList();
+    private final IntArrayList rights = new IntArrayList();
+
+    /**
+     * Ids of compound formulas, keyed by kind and child ids.
+     */
+    private final Map<Long, Integer> compound = new HashMap<>();
+    private final Map<L, Integer> propositions = new HashMap<>();
+    private int trueId = -1;
+
+    /**
+     * Ids of formula objects already interned, so that shared subtrees are
+     * walked once.
+     */
+    private final Map<LTL<L>, Integer> seen = new IdentityHashMap<>();
+
+    /**
+     * @param formula A formula.
+     * @return The id of {@code formula}, adding it and its subformulas if
+     * needed.
+     */
+    public int intern(LTL<L> formula) {
+        Integer known = seen.get(formula);
+        if (known != null) {
+            return known;
+        }
+
+        int id;
+        if (formula instanceof TRUE) {
+            if (trueId < 0) {
+                trueId = add(formula, TRUE, -1, -1);
+            }
+            id = trueId;
+        } else if (formula instanceof AP) {
+            L name = ((AP<L>) formula).getName();
+            Integer existing = propositions.get(name);
+            if (existing == null) {
+                existing = add(formula, AP, -1, -1);
+                propositions.put(name, existing);
+            }
+            id = existing;
+        } else if (formula instanceof Not) {
+            int inner = intern(((Not<L>) formula).getInner());
+            id = (getKind(inner) == NOT) ? getLeft(inner) : compound(formula, NOT, inner, -1);
+        } else if (formula instanceof And) {
+            And<L> and = (And<L>) formula;
+            id = compound(formula, AND, intern(and.getLeft()), intern(and.getRight()));
+        } else if (formula instanceof Next) {
+            id = compound(formula, NEXT, intern(((Next<L>) formula).getInner()), -1);
+        } else if (formula instanceof Until) {
+            Until<L> until = (Until<L>) formula;
+            id = compound(formula, UNTIL, intern(until.getLeft()), intern(until.getRight()));
+        } else {
+            throw new IllegalArgumentException("Unknown LTL formula type " + formula.getClass().getName());
+        }
+
+        seen.put(formula, id);
+        return id;
+    }
+
+    /**
+     * @return The negation of formula {@code id}, without double negations.
+     */
+    public int negate(int id) {
+        return (getKind(id) == NOT) ? getLeft(id) : compound(new Not<>(formulas.get(id)), NOT, id, -1);
+    }
+
+    public int size() {
+        return formulas.size();
+    }
+
+    public LTL<L> getFormula(int id) {
+        return formulas.get(id);
+    }
+
+    public int getKind(int id) {
+        return kinds.get(id);
+    }
+
+    /**
+     * @return The left (or only) subformula of formula {@code id}, or
+     * {@code -1} if it has none.
+     */
+    public int getLeft(int id) {
+        return lefts.get(id);
+    }
+
+    /**
+     * @return The right subformula of formula {@code id}, or {@code -1} if it
+     * has none.
+     */
+    public int getRight(int id) {
+        return rights.get(id);
+    }
+
+    private int compound(LTL<L> formula, int kind, int left, int right) {
+        long key = ((long) kind << 58) ^ ((long) left << 29) ^ (right & 0x1FFFFFFFL);
+        Integer existing = compound.get(key);
+        if (existing == null) {
+            existing = add(formula, kind, left, right);
+            compound.put(key, existing);
+        }
+        return existing;
+    }
+
+    private int add(LTL<L> formula, int kind, int left, int right) {
+        formulas.add(formula);
+        kinds.add(kind);
+        lefts.add(left);
+        rights.add(right);
+        return formulas.size() - 1;
+    }
+
+}
@@ -0,0 +1,329 @@
+package il.ac.bgu.cs.formalmethodsintro.base.ltl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Guard;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SymbolicAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.util.IntArrayList;
+
+/**
+ * Translates an LTL formula to a generalized Büchi automaton, following the
+ * construction of Baier and Katoen (Theorem 5.37): the states are the
+ * elementary sets of the formula's closure, a state {@code B} reads the
+ * letter {@code B ∩ AP}, and each until subformula {@code f U g} adds a color
+ * holding the states where it is fulfilled ({@code f U g ∉ B} or
+ * {@code g ∈ B}).
+ *
+ * Unlike the textbook construction, elementary sets are not enumerated up
+ * front. Starting from the sets containing the formula, the successors of
+ * each set are generated by assigning truth values to the subformulas in
+ * increasing id order (subformulas first), and pruning an assignment as soon
+ * as it breaks consistency or the next-step constraints of its predecessor.
+ * Only reachable elementary sets are created. Sets are kept as bit sets over
+ * the ids of an {@link LtlClosure}.
+ *
+ * @param <L> The type of the atomic propositions.
+ */
+public class LtlToGnba<L> {
+
+    private static final int FREE = -1;
+
+    private final LtlClosure<L> closure = new LtlClosure<>();
+    private final int root;
+    private final int size;
+    private final IntArrayList untils = new IntArrayList();
+
+    /**
+     * Propositions the letters range over besides those of the formula.
+     */
+    private final List<L> others = new ArrayList<>();
+
+    public LtlToGnba(LTL<L> formula) {
+        this(formula, Collections.emptySet());
+    }
+
+    /**
+     * @param formula The formula to translate.
+     * @param propositions Propositions the letters of {@link #translate()}
+     * range over, as the labels of a transition system would. Those not in
+     * the formula are unconstrained, and multiply the transitions by two
+     * each.
+     */
+    public LtlToGnba(LTL<L> formula, Set<L> propositions) {
+        root = closure.intern(formula);
+        size = closure.size();
+        Set<L> own = new HashSet<>();
+        for (int id = 0; id < size; id++) {
+            if (closure.getKind(id) == LtlClosure.UNTIL) {
+                untils.add(id);
+            } else if (closure.getKind(id) == LtlClosure.AP) {
+                own.add(((AP<L>) closure.getFormula(id)).getName());
+            }
+        }
+        for (L ap : propositions) {
+            if (!own.contains(ap)) {
+                others.add(ap);
+            }
+        }
+    }
+
+    /**
+     * Receives the automaton as it is explored.
+     */
+    private interface Builder<L> {
+
+        void initial(Set<LTL<L>> state);
+
+        void accepting(Set<LTL<L>> state, int color);
+
+        void transition(Set<LTL<L>> from, BitSet letter, Set<LTL<L>> to);
+    }
+
+    /**
+     * @return A GNBA whose states are elementary sets of formulas, accepting
+     * exactly the words satisfying the formula. Color {@code i} belongs to the
+     * {@code i}-th until subformula. A formula without until has no colors,
+     * and every infinite run is accepting.
+     */
+    public MultiColorAutomaton<Set<LTL<L>>, L> translate() {
+        MultiColorAutomaton<Set<LTL<L>>, L> gnba = new MultiColorAutomaton<>();
+        for (int i = 0; i < untils.size(); i++) {
+            // Create every color, even those no reachable state is in.
+            gnba.getAcceptingStates(i);
+        }
+        explore(new Builder<L>() {
+            @Override
+            public void initial(Set<LTL<L>> state) {
+                gnba.setInitial(state);
+            }
+
+            @Override
+            public void accepting(Set<LTL<L>> state, int color) {
+                gnba.setAccepting(state, color);
+            }
+
+            @Override
+            public void transition(Set<LTL<L>> from, BitSet letter, Set<LTL<L>> to) {
+                Set<L> fixed = letterOf(letter);
+                for (long free = 0; free < (1L << others.size()); free++) {
+                    Set<L> full = new HashSet<>(fixed);
+                    for (int i = 0; i < others.size(); i++) {
+                        if ((free & (1L << i)) != 0) {
+                            full.add(others.get(i));
+                        }
+                    }
+                    gnba.addTransition(from, full, to);
+                }
+            }
+        });
+        return gnba;
+    }
+
+    /**
+     * Like {@link #translate()}, but each transition is guarded by the cube
+     * fixing every proposition of the formula, instead of labeled with the
+     * set of propositions that hold. Propositions that are not in the formula
+     * are unconstrained, so the automaton reads labels over any propositions.
+     *
+     * @return A GNBA with guarded transitions, accepting exactly the words
+     * satisfying the formula.
+     */
+    public SymbolicAutomaton<Set<LTL<L>>, L> translateSymbolic() {
+        SymbolicAutomaton<Set<LTL<L>>, L> gnba = new SymbolicAutomaton<>();
+        for (int i = 0; i < untils.size(); i++) {
+            gnba.getAcceptingStates(i);
+        }
+        long[] apBits = new long[size];
+        for (int id = 0; id < size; id++) {
+            if (closure.getKind(id) == LtlClosure.AP) {
+                apBits[id] = 1L << gnba.propositionBit(((AP<L>) closure.getFormula(id)).getName());
+            }
+        }
+        explore(new Builder<L>() {
+            @Override
+            public void initial(Set<LTL<L>> state) {
+                gnba.setInitial(state);
+            }
+
+            @Override
+            public void accepting(Set<LTL<L>> state, int color) {
+                gnba.setAccepting(state, color);
+            }
+
+            @Override
+            public void transition(Set<LTL<L>> from, BitSet letter, Set<LTL<L>> to) {
+                long positive = 0;
+                long negative = 0;
+                for (int id = 0; id < size; id++) {
+                    if (letter.get(id)) {
+                        positive |= apBits[id];
+                    } else {
+                        negative |= apBits[id];
+                    }
+                }
+                gnba.addTransition(from, new Guard(positive, negative), to);
+            }
+        });
+        return gnba;
+    }
+
+    private void explore(Builder<L> builder) {
+        Map<BitSet, Set<LTL<L>>> states = new HashMap<>();
+        Deque<BitSet> queue = new ArrayDeque<>();
+        Consumer<BitSet> discover = b -> {
+            if (!states.containsKey(b)) {
+                states.put(b, toState(b));
+                queue.add(b);
+            }
+        };
+
+        int[] required = new int[size];
+        Arrays.fill(required, FREE);
+        required[root] = 1;
+        expand(0, new BitSet(size), required, discover);
+        for (BitSet b : queue) {
+            builder.initial(states.get(b));
+        }
+
+        while (!queue.isEmpty()) {
+            BitSet b = queue.poll();
+            Set<LTL<L>> state = states.get(b);
+            for (int i = 0; i < untils.size(); i++) {
+                int until = untils.get(i);
+                if (!b.get(until) || b.get(closure.getRight(until))) {
+                    builder.accepting(state, i);
+                }
+            }
+
+            expand(0, new BitSet(size), nextRequirements(b), next -> {
+                discover.accept(next);
+                builder.transition(state, b, states.get(next));
+            });
+        }
+    }
+
+    /**
+     * @return The truth values that the successors of elementary set
+     * {@code b} must give to each formula, or {@link #FREE}.
+     */
+    private int[] nextRequirements(BitSet b) {
+        int[] required = new int[size];
+        Arrays.fill(required, FREE);
+        for (int id = 0; id < size; id++) {
+            switch (closure.getKind(id)) {
+                case LtlClosure.NEXT:
+                    constrain(required, closure.getLeft(id), b.get(id));
+                    break;
+                case LtlClosure.UNTIL:
+                    // f U g ∈ B iff g ∈ B, or f ∈ B and f U g ∈ B'.
+                    if (!b.get(closure.getRight(id)) && b.get(closure.getLeft(id))) {
+                        constrain(required, id, b.get(id));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return required;
+    }
+
+    private static void constrain(int[] required, int id, boolean value) {
+        int v = value ? 1 : 0;
+        if (required[id] != FREE && required[id] != v) {
+            // Contradicting requirements: no successor is possible. Mark by
+            // requiring a value no assignment can have.
+            required[id] = 2;
+        } else {
+            required[id] = v;
+        }
+    }
+
+    /**
+     * Enumerates the elementary sets that agree with {@code required}, by
+     * assigning the formulas from {@code id} on.
+     */
+    private void expand(int id, BitSet b, int[] required, Consumer<BitSet> found) {
+        if (id == size) {
+            found.accept((BitSet) b.clone());
+            return;
+        }
+
+        int left = closure.getLeft(id);
+        int right = closure.getRight(id);
+        boolean canBeTrue;
+        boolean canBeFalse;
+        switch (closure.getKind(id)) {
+            case LtlClosure.TRUE:
+                canBeTrue = true;
+                canBeFalse = false;
+                break;
+            case LtlClosure.NOT:
+                canBeTrue = !b.get(left);
+                canBeFalse = !canBeTrue;
+                break;
+            case LtlClosure.AND:
+                canBeTrue = b.get(left) && b.get(right);
+                canBeFalse = !canBeTrue;
+                break;
+            case LtlClosure.UNTIL:
+                // Local consistency: g implies f U g, and f U g without g
+                // implies f.
+                canBeTrue = b.get(left) || b.get(right);
+                canBeFalse = !b.get(right);
+                break;
+            default:
+                // Atomic propositions and next formulas are free.
+                canBeTrue = true;
+                canBeFalse = true;
+                break;
+        }
+        canBeTrue &= required[id] == FREE || required[id] == 1;
+        canBeFalse &= required[id] == FREE || required[id] == 0;
+
+        if (canBeTrue) {
+            b.set(id);
+            expand(id + 1, b, required, found);
+            b.clear(id);
+        }
+        if (canBeFalse) {
+            expand(id + 1, b, required, found);
+        }
+    }
+
+    private Set<L> letterOf(BitSet b) {
+        Set<L> letter = new HashSet<>();
+        for (int id = b.nextSetBit(0); id >= 0; id = b.nextSetBit(id + 1)) {
+            if (closure.getKind(id) == LtlClosure.AP) {
+                letter.add(((AP<L>) closure.getFormula(id)).getName());
+            }
+        }
+        return letter;
+    }
+
+    /**
+     * @return The elementary set {@code b} as a set of formulas: each
+     * subformula that is not a negation, or its negation.
+     */
+    private Set<LTL<L>> toState(BitSet b) {
+        Set<LTL<L>> state = new HashSet<>();
+        for (int id = 0; id < size; id++) {
+            if (closure.getKind(id) != LtlClosure.NOT) {
+                state.add(b.get(id) ? closure.getFormula(id) : closure.getFormula(closure.negate(id)));
+            }
+        }
+        return state;
+    }
+
+}
@@ -0,0 +1,15 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A compiled NanoPromela boolean expression.
+ *
+ * @see NanoPromelaCompiler
+ */
+@FunctionalInterface
+public interface BoolExpr {
+
+    boolean evaluate(Map<String, Object> eval);
+
+}
@@ -63,7 +63,7 @@ public class Evaluator {
         return evaluate(context.intexpr(0));
     }
 
-    @SuppressWarnings({"serial", "unchecked"})
+    @SuppressWarnings("unchecked")
     public Map<String, Object> evaluate(StmtContext context) {
 
         if (context.skipstmt() != null) {
@@ -71,44 +71,28 @@ public class Evaluator {
         }
 
         if (context.assstmt() != null) {
-            return new HashMap<String, Object>(eval) {
-                {
-                    put(context.assstmt().VARNAME().getText(), evaluate(context.assstmt().intexpr()));
-                }
-            };
+            Map<String, Object> neweval = new HashMap<>(eval);
+            neweval.put(context.assstmt().VARNAME().getText(), evaluate(context.assstmt().intexpr()));
+            return neweval;
         }
 
         if (context.atomicstmt() != null) {
-            return new HashMap<String, Object>(eval) {
-                {
-                    for (int i = 0; i < context.atomicstmt().VARNAME().size(); i++) {
-                        put(context.atomicstmt().VARNAME(i).getText(), evaluate(context.atomicstmt().intexpr(i)));
-                    }
-                }
-            };
+            Map<String, Object> neweval = new HashMap<>(eval);
+            for (int i = 0; i < context.atomicstmt().VARNAME().size(); i++) {
+                neweval.put(context.atomicstmt().VARNAME(i).getText(), evaluate(context.atomicstmt().intexpr(i)));
+            }
+            return neweval;
         }
 
         if (context.chanwritestmt() != null) {
-            HashMap<String, Object> neweval = new HashMap<String, Object>(eval) {
-                {
-
-                    List<Integer> q = (List<Integer>) eval.get(context.chanwritestmt().CHANNAME().getText());
-                    if (q == null) {
-                        q = new Vector<Integer>();
-                    }
-
-                    q = new Vector<Integer>(q) {
-                        {
-                            add(evaluate(context.chanwritestmt().intexpr()));
-                        }
-                    };
-
-                    put(context.chanwritestmt().CHANNAME().getText(), q);
-                }
-            };
+            String chan = context.chanwritestmt().CHANNAME().getText();
+            List<Integer> q = (List<Integer>) eval.get(chan);
+            Vector<Integer> newq = (q == null) ? new Vector<>() : new Vector<>(q);
+            newq.add(evaluate(context.chanwritestmt().intexpr()));
 
+            Map<String, Object> neweval = new HashMap<>(eval);
+            neweval.put(chan, newq);
             return neweval;
-
         }
 
         // chanreadstmt : CHANNAME '?' VARNAME ;
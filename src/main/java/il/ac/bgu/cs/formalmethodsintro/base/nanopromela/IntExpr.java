@@ -0,0 +1,15 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A compiled NanoPromela integer expression.
+ *
+ * @see NanoPromelaCompiler
+ */
+@FunctionalInterface
+public interface IntExpr {
+
+    int evaluate(Map<String, Object> eval);
+
+}
@@ -0,0 +1,403 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AssstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.AtomicstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.ChanreadstmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.ChanwritestmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.IntexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.JoinedContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.Environment;
+
+/**
+ * Translates NanoPromela parse trees into trees of {@link IntExpr},
+ * {@link BoolExpr} and {@link Stmt} nodes. The translation inspects each parse
+ * tree node once, so evaluating the result does not look at tokens or parse
+ * literals again.
+ *
+ * The compiled nodes have the same semantics as {@link Evaluator}: missing
+ * variables read as {@code 0}, {@code ^} is bitwise xor, {@code a % p} is
+ * {@code (a + p) % p}, and statements other than skip, assignments, atomic
+ * blocks and channel operations evaluate to {@code null}.
+ *
+ * When evaluated over an {@link Environment}, variables are accessed through
+ * their slots, which each node resolves once per layout.
+ */
+public final class NanoPromelaCompiler {
+
+    private static final BoolExpr TRUE = eval -> true;
+    private static final BoolExpr FALSE = eval -> false;
+    private static final Stmt SKIP = eval -> eval;
+    private static final Stmt NOT_EXECUTABLE = eval -> null;
+
+    private NanoPromelaCompiler() {
+        // static utility class
+    }
+
+    public static IntExpr compile(IntexprContext context) {
+        if (context.POW() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) ^ r.evaluate(eval);
+        }
+
+        if (context.MINUS() != null && context.intexpr().size() == 1) {
+            IntExpr e = compile(context.intexpr(0));
+            return eval -> -e.evaluate(eval);
+        }
+
+        if (context.MULT() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) * r.evaluate(eval);
+        }
+
+        if (context.DIV() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) / r.evaluate(eval);
+        }
+
+        if (context.MOD() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> {
+                int p = r.evaluate(eval);
+                return (l.evaluate(eval) + p) % p;
+            };
+        }
+
+        if (context.PLUS() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) + r.evaluate(eval);
+        }
+
+        if (context.MINUS() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) - r.evaluate(eval);
+        }
+
+        if (context.INT() != null) {
+            String text = context.getText();
+            try {
+                int value = Integer.parseInt(text);
+                return eval -> value;
+            } catch (NumberFormatException nfe) {
+                // Report the bad literal when it is evaluated, as the
+                // interpreter does.
+                return eval -> Integer.parseInt(text);
+            }
+        }
+
+        if (context.VARNAME() != null) {
+            return variable(context.getText());
+        }
+
+        if (context.CHANNAME() != null) {
+            return channelSize(context.CHANNAME().getText());
+        }
+
+        assert (context.intexpr() != null);
+        return compile(context.intexpr(0));
+    }
+
+    public static BoolExpr compile(BoolexprContext context) {
+        if (context.NOT() != null) {
+            BoolExpr e = compile(context.boolexpr(0));
+            return eval -> !e.evaluate(eval);
+        }
+
+        if (context.AND() != null) {
+            BoolExpr l = compile(context.boolexpr(0));
+            BoolExpr r = compile(context.boolexpr(1));
+            return eval -> l.evaluate(eval) && r.evaluate(eval);
+        }
+
+        if (context.OR() != null) {
+            BoolExpr l = compile(context.boolexpr(0));
+            BoolExpr r = compile(context.boolexpr(1));
+            return eval -> l.evaluate(eval) || r.evaluate(eval);
+        }
+
+        if (context.LTEQ() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) <= r.evaluate(eval);
+        }
+
+        if (context.GTEQ() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) >= r.evaluate(eval);
+        }
+
+        if (context.LT() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) < r.evaluate(eval);
+        }
+
+        if (context.GT() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) > r.evaluate(eval);
+        }
+
+        if (context.EQ() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) == r.evaluate(eval);
+        }
+
+        if (context.NEQ() != null) {
+            IntExpr l = compile(context.intexpr(0));
+            IntExpr r = compile(context.intexpr(1));
+            return eval -> l.evaluate(eval) != r.evaluate(eval);
+        }
+
+        if (context.TRUE() != null) {
+            return TRUE;
+        }
+
+        if (context.FALSE() != null) {
+            return FALSE;
+        }
+
+        assert (context.boolexpr() != null);
+        return compile(context.boolexpr(0));
+    }
+
+    public static Stmt compile(StmtContext context) {
+        if (context.skipstmt() != null) {
+            return SKIP;
+        }
+
+        if (context.assstmt() != null) {
+            AssstmtContext ass = context.assstmt();
+            String var = ass.VARNAME().getText();
+            SlotRef slot = new SlotRef(var);
+            IntExpr value = compile(ass.intexpr());
+            return eval -> {
+                if (eval instanceof Environment) {
+                    Environment env = (Environment) eval;
+                    return env.withInt(slot.assign(env), value.evaluate(env));
+                }
+                Map<String, Object> neweval = new HashMap<>(eval);
+                neweval.put(var, value.evaluate(eval));
+                return neweval;
+            };
+        }
+
+        if (context.atomicstmt() != null) {
+            AtomicstmtContext atomic = context.atomicstmt();
+            int count = atomic.VARNAME().size();
+            String[] vars = new String[count];
+            SlotRef[] slots = new SlotRef[count];
+            IntExpr[] values = new IntExpr[count];
+            for (int i = 0; i < count; i++) {
+                vars[i] = atomic.VARNAME(i).getText();
+                slots[i] = new SlotRef(vars[i]);
+                values[i] = compile(atomic.intexpr(i));
+            }
+            // All the right-hand sides see the evaluation from before the block.
+            return eval -> {
+                if (eval instanceof Environment) {
+                    Environment env = (Environment) eval;
+                    Environment.Editor editor = env.edit();
+                    for (int i = 0; i < slots.length; i++) {
+                        editor.setInt(slots[i].assign(env), values[i].evaluate(env));
+                    }
+                    return editor.done();
+                }
+                Map<String, Object> neweval = new HashMap<>(eval);
+                for (int i = 0; i < vars.length; i++) {
+                    neweval.put(vars[i], values[i].evaluate(eval));
+                }
+                return neweval;
+            };
+        }
+
+        if (context.chanwritestmt() != null) {
+            ChanwritestmtContext write = context.chanwritestmt();
+            String chan = write.CHANNAME().getText();
+            SlotRef slot = new SlotRef(chan);
+            IntExpr value = compile(write.intexpr());
+            return eval -> {
+                Environment env = (eval instanceof Environment) ? (Environment) eval : null;
+                @SuppressWarnings("unchecked")
+                List<Integer> q = (List<Integer>) ((env != null) ? env.getValue(slot.lookup(env)) : eval.get(chan));
+                Vector<Integer> newq = (q == null) ? new Vector<>() : new Vector<>(q);
+                newq.add(value.evaluate(eval));
+
+                if (env != null) {
+                    return env.with(slot.assign(env), newq);
+                }
+                Map<String, Object> neweval = new HashMap<>(eval);
+                neweval.put(chan, newq);
+                return neweval;
+            };
+        }
+
+        if (context.chanreadstmt() != null) {
+            ChanreadstmtContext read = context.chanreadstmt();
+            String chan = read.CHANNAME().getText();
+            String var = read.VARNAME().getText();
+            SlotRef chanSlot = new SlotRef(chan);
+            SlotRef varSlot = new SlotRef(var);
+            return eval -> {
+                Environment env = (eval instanceof Environment) ? (Environment) eval : null;
+                @SuppressWarnings("unchecked")
+                List<Integer> q = (List<Integer>) ((env != null) ? env.getValue(chanSlot.lookup(env)) : eval.get(chan));
+                if (q == null || q.isEmpty()) {
+                    return null;
+                }
+
+                Vector<Integer> newq = new Vector<>(q);
+                Integer val = newq.remove(0);
+
+                if (env != null) {
+                    return env.edit().set(chanSlot.assign(env), newq).set(varSlot.assign(env), val).done();
+                }
+                Map<String, Object> neweval = new HashMap<>(eval);
+                neweval.put(chan, newq);
+                neweval.put(var, val);
+                return neweval;
+            };
+        }
+
+        return NOT_EXECUTABLE;
+    }
+
+    /**
+     * Compiles a joined handshake action, such as {@code _C!x+1 | _C?y}. The
+     * result of evaluating it contains only the assignment of the read
+     * variable (or is the passed evaluation, when no value is passed).
+     * Incompatible handshakes compile to a statement that throws an
+     * {@link IllegalArgumentException} when evaluated.
+     *
+     * @param context The parse tree of the joined action.
+     * @return The compiled action.
+     */
+    public static Stmt compile(JoinedContext context) {
+        if (context.hsreadstmt() == null) {
+            return failing("Not an interleaved (hsreadstmt) statement. See the NanoPromela.g4 file.");
+        }
+
+        if (!context.hsreadstmt().ZEROCAPACITYCHANNAME().getText()
+                .equals(context.hswritestmt().ZEROCAPACITYCHANNAME().getText())) {
+            return failing("Incompatible hanshaking statements " + context.getText());
+        }
+
+        boolean reads = context.hsreadstmt().VARNAME() != null;
+        boolean writes = context.hswritestmt().intexpr() != null;
+        if (reads != writes) {
+            return failing("Incompatible hanshaking statements");
+        }
+
+        if (reads) {
+            String var = context.hsreadstmt().VARNAME().getText();
+            IntExpr value = compile(context.hswritestmt().intexpr());
+            return eval -> {
+                Map<String, Object> neweval = new HashMap<>();
+                neweval.put(var, value.evaluate(eval));
+                return neweval;
+            };
+        } else {
+            return SKIP;
+        }
+    }
+
+    private static IntExpr variable(String name) {
+        SlotRef slot = new SlotRef(name);
+        return eval -> {
+            if (eval instanceof Environment) {
+                Environment env = (Environment) eval;
+                return env.getInt(slot.lookup(env));
+            }
+            Object object = eval.get(name);
+            return object == null ? 0 : (int) object;
+        };
+    }
+
+    private static IntExpr channelSize(String name) {
+        SlotRef slot = new SlotRef(name);
+        return eval -> {
+            Object object = (eval instanceof Environment)
+                    ? ((Environment) eval).getValue(slot.lookup((Environment) eval))
+                    : eval.get(name);
+            List<?> q = (List<?>) object;
+            return q == null ? 0 : q.size();
+        };
+    }
+
+    private static Stmt failing(String message) {
+        return eval -> {
+            throw new IllegalArgumentException(message);
+        };
+    }
+
+    /**
+     * The slot of a name in the layout of the environments a node is evaluated
+     * with. Compiled nodes are shared, so the last resolved slot is published
+     * as an immutable pair, together with the layout it belongs to.
+     */
+    private static final class SlotRef {
+
+        private final String name;
+        private volatile Resolved resolved;
+
+        SlotRef(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return The slot of the name, or {@code -1} if it has none yet.
+         */
+        int lookup(Environment env) {
+            Environment.Layout layout = env.getLayout();
+            Resolved r = resolved;
+            if (r != null && r.layout == layout) {
+                return r.slot;
+            }
+            int slot = layout.lookup(name);
+            if (slot >= 0) {
+                resolved = new Resolved(layout, slot);
+            }
+            return slot;
+        }
+
+        /**
+         * @return The slot of the name, assigning one if needed.
+         */
+        int assign(Environment env) {
+            Environment.Layout layout = env.getLayout();
+            Resolved r = resolved;
+            if (r != null && r.layout == layout) {
+                return r.slot;
+            }
+            int slot = layout.slotOf(name);
+            resolved = new Resolved(layout, slot);
+            return slot;
+        }
+    }
+
+    private static final class Resolved {
+
+        final Environment.Layout layout;
+        final int slot;
+
+        Resolved(Environment.Layout layout, int slot) {
+            this.layout = layout;
+            this.slot = slot;
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.JoinedContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ThrowingErrorListener;
+import il.ac.bgu.cs.formalmethodsintro.base.util.LruCache;
+
+/**
+ * Parses condition and action strings once, and keeps the parse trees, along
+ * with their {@link NanoPromelaCompiler compiled} forms, in bounded caches
+ * shared by all the parser-based action and condition definitions. Neither is
+ * modified after creation, so they can be used by several threads at once.
+ *
+ * Parse failures are cached as well; looking up a string that failed to parse
+ * throws the same kind of exception as parsing it again would.
+ */
+public final class NanoPromelaParseCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final LruCache<String, Parsed<BoolexprContext, BoolExpr>> CONDITIONS = new LruCache<>(DEFAULT_CAPACITY);
+    private static final LruCache<String, Parsed<StmtContext, Stmt>> ACTIONS = new LruCache<>(DEFAULT_CAPACITY);
+    private static final LruCache<String, Parsed<JoinedContext, Stmt>> JOINED_ACTIONS = new LruCache<>(DEFAULT_CAPACITY);
+    private static final LruCache<String, Boolean> ONE_SIDED_ACTIONS = new LruCache<>(DEFAULT_CAPACITY);
+
+    private NanoPromelaParseCache() {
+        // static utility class
+    }
+
+    /**
+     * @param condition A boolean expression.
+     * @return The parse tree of {@code condition}.
+     * @throws ParseCancellationException if {@code condition} cannot be
+     * parsed.
+     */
+    public static BoolexprContext condition(String condition) {
+        return conditionEntry(condition).getTree();
+    }
+
+    /**
+     * @param condition A boolean expression.
+     * @return The compiled form of {@code condition}.
+     * @throws ParseCancellationException if {@code condition} cannot be
+     * parsed.
+     */
+    public static BoolExpr compiledCondition(String condition) {
+        return conditionEntry(condition).getCompiled();
+    }
+
+    /**
+     * @param action A statement.
+     * @return The parse tree of {@code action}.
+     * @throws ParseCancellationException if {@code action} cannot be parsed.
+     */
+    public static StmtContext action(String action) {
+        return actionEntry(action).getTree();
+    }
+
+    /**
+     * @param action A statement.
+     * @return The compiled form of {@code action}.
+     * @throws ParseCancellationException if {@code action} cannot be parsed.
+     */
+    public static Stmt compiledAction(String action) {
+        return actionEntry(action).getCompiled();
+    }
+
+    /**
+     * @param action A joined action, such as {@code _C!0 | _C?x}.
+     * @return The parse tree of {@code action}, or {@code null} if it is not a
+     * joined action.
+     */
+    public static JoinedContext joinedAction(String action) {
+        return joinedEntry(action).getTree();
+    }
+
+    /**
+     * @param action A joined action, such as {@code _C!0 | _C?x}.
+     * @return The compiled form of {@code action}, or {@code null} if it is
+     * not a joined action.
+     */
+    public static Stmt compiledJoinedAction(String action) {
+        return joinedEntry(action).getCompiled();
+    }
+
+    /**
+     * @param action An action.
+     * @return {@code true} iff {@code action} is a one-sided action on a
+     * zero-capacity channel, such as {@code _C?x}.
+     */
+    public static boolean isOneSidedAction(String action) {
+        return ONE_SIDED_ACTIONS.get(action, a -> {
+            NanoPromelaParser parser = newParser(a);
+            try {
+                parser.onesided();
+                return parser.isMatchedEOF();
+            } catch (Exception e) {
+                return false;
+            }
+        });
+    }
+
+    public static long getHitCount() {
+        return CONDITIONS.getHitCount() + ACTIONS.getHitCount()
+                + JOINED_ACTIONS.getHitCount() + ONE_SIDED_ACTIONS.getHitCount();
+    }
+
+    public static long getMissCount() {
+        return CONDITIONS.getMissCount() + ACTIONS.getMissCount()
+                + JOINED_ACTIONS.getMissCount() + ONE_SIDED_ACTIONS.getMissCount();
+    }
+
+    /**
+     * Empties the caches and resets their statistics.
+     */
+    public static void clear() {
+        CONDITIONS.clear();
+        ACTIONS.clear();
+        JOINED_ACTIONS.clear();
+        ONE_SIDED_ACTIONS.clear();
+    }
+
+    public static String getStatistics() {
+        return "conditions: " + CONDITIONS + ", actions: " + ACTIONS
+                + ", joined actions: " + JOINED_ACTIONS + ", one-sided actions: " + ONE_SIDED_ACTIONS;
+    }
+
+    private static Parsed<BoolexprContext, BoolExpr> conditionEntry(String condition) {
+        return CONDITIONS.get(condition, parseWith(p -> p.boolexpr(), NanoPromelaCompiler::compile, false));
+    }
+
+    private static Parsed<StmtContext, Stmt> actionEntry(String action) {
+        return ACTIONS.get(action, parseWith(p -> p.spec().stmt(), NanoPromelaCompiler::compile, false));
+    }
+
+    private static Parsed<JoinedContext, Stmt> joinedEntry(String action) {
+        return JOINED_ACTIONS.get(action, parseWith(p -> p.joined(), NanoPromelaCompiler::compile, true));
+    }
+
+    /**
+     * Creates a parser that throws on syntax errors.
+     */
+    private static NanoPromelaParser newParser(String text) {
+        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(text));
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        NanoPromelaParser parser = new NanoPromelaParser(tokens);
+
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new ThrowingErrorListener());
+
+        parser.removeErrorListeners();
+        parser.addErrorListener(new ThrowingErrorListener());
+
+        return parser;
+    }
+
+    /**
+     * @param rule The grammar rule to parse the text with.
+     * @param compiler Compiles the parse tree.
+     * @param lenient When {@code true}, failures and partial matches yield a
+     * {@code null} tree rather than an exception.
+     */
+    private static <T, C> Function<String, Parsed<T, C>> parseWith(Function<NanoPromelaParser, T> rule,
+            Function<T, C> compiler, boolean lenient) {
+        return text -> {
+            NanoPromelaParser parser = newParser(text);
+            T tree;
+            try {
+                tree = rule.apply(parser);
+                if (lenient && !parser.isMatchedEOF()) {
+                    return new Parsed<>(null, null, null);
+                }
+            } catch (ParseCancellationException ex) {
+                return lenient ? new Parsed<>(null, null, null) : new Parsed<>(null, null, ex.getMessage());
+            } catch (RuntimeException ex) {
+                if (lenient) {
+                    return new Parsed<>(null, null, null);
+                }
+                throw ex;
+            }
+            return new Parsed<>(tree, compiler.apply(tree), null);
+        };
+    }
+
+    /**
+     * A cached parse result: either a tree and its compiled form (possibly
+     * both {@code null}), or the message of the error parsing failed with.
+     */
+    private static final class Parsed<T, C> {
+
+        private final T tree;
+        private final C compiled;
+        private final String error;
+
+        Parsed(T tree, C compiled, String error) {
+            this.tree = tree;
+            this.compiled = compiled;
+            this.error = error;
+        }
+
+        T getTree() {
+            checkError();
+            return tree;
+        }
+
+        C getCompiled() {
+            checkError();
+            return compiled;
+        }
+
+        private void checkError() {
+            if (error != null) {
+                throw new ParseCancellationException(error);
+            }
+        }
+    }
+
+}
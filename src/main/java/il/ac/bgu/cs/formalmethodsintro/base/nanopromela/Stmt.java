@@ -0,0 +1,20 @@
+package il.ac.bgu.cs.formalmethodsintro.base.nanopromela;
+
+import java.util.Map;
+
+/**
+ * A compiled NanoPromela statement.
+ *
+ * @see NanoPromelaCompiler
+ */
+@FunctionalInterface
+public interface Stmt {
+
+    /**
+     * @param eval The variable evaluation before the statement.
+     * @return The variable evaluation after the statement, or {@code null} if
+     * the statement cannot be executed in {@code eval}.
+     */
+    Map<String, Object> evaluate(Map<String, Object> eval);
+
+}
@@ -0,0 +1,370 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable variable evaluation, where each variable (or channel) name is
+ * mapped to a fixed slot by a shared {@link Layout}. Integer values are kept
+ * unboxed in an {@code int[]}; other values (such as channel contents) are
+ * kept in an {@code Object[]}. Updates copy the arrays and leave the original
+ * unchanged, and the hash code is computed once.
+ *
+ * Environments are {@code Map<String, Object>}s, equal to any other map with
+ * the same entries, so they can be passed to {@link ActionDef}s and
+ * {@link ConditionDef}s. Being immutable, they do not support the mutating
+ * {@link Map} methods; use {@link #with(String, Object)} or {@link #edit()}
+ * instead.
+ */
+public final class Environment extends AbstractMap<String, Object> {
+
+    /**
+     * Assigns slots to names. Slots are never re-assigned, so environments
+     * created with fewer slots remain valid as the layout grows. A layout may
+     * be shared by several threads.
+     */
+    public static final class Layout {
+
+        private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[0];
+
+        /**
+         * @param name A variable or channel name.
+         * @return The slot of {@code name}, or {@code -1} if it has none.
+         */
+        public int lookup(String name) {
+            Integer slot = slots.get(name);
+            return (slot == null) ? -1 : slot;
+        }
+
+        /**
+         * @param name A variable or channel name.
+         * @return The slot of {@code name}, assigning a new one if needed.
+         */
+        public int slotOf(String name) {
+            Integer slot = slots.get(name);
+            if (slot != null) {
+                return slot;
+            }
+            synchronized (this) {
+                slot = slots.get(name);
+                if (slot == null) {
+                    String[] newNames = Arrays.copyOf(names, names.length + 1);
+                    slot = names.length;
+                    newNames[slot] = name;
+                    names = newNames;
+                    slots.put(name, slot);
+                }
+                return slot;
+            }
+        }
+
+        public String nameOf(int slot) {
+            return names[slot];
+        }
+
+        public int size() {
+            return names.length;
+        }
+    }
+
+    /**
+     * A mutable copy of an environment, used to apply several updates with a
+     * single copy of the underlying arrays.
+     */
+    public static final class Editor {
+
+        private final Layout layout;
+        private int[] ints;
+        private Object[] refs;
+        /**
+         * Whether the arrays are shared with an environment, and have to be
+         * copied before they are changed.
+         */
+        private boolean shared;
+
+        private Editor(Environment base) {
+            layout = base.layout;
+            ints = base.ints;
+            refs = base.refs;
+            shared = true;
+        }
+
+        public Editor setInt(int slot, int value) {
+            ensureCapacity(slot);
+            ints[slot] = value;
+            refs[slot] = INT;
+            return this;
+        }
+
+        public Editor set(int slot, Object value) {
+            if (value instanceof Integer) {
+                return setInt(slot, (Integer) value);
+            }
+            ensureCapacity(slot);
+            ints[slot] = 0;
+            refs[slot] = (value == null) ? NULL : value;
+            return this;
+        }
+
+        public Editor set(String name, Object value) {
+            return set(layout.slotOf(name), value);
+        }
+
+        public Environment done() {
+            shared = true;
+            return new Environment(layout, ints, refs);
+        }
+
+        private void ensureCapacity(int slot) {
+            if (slot >= refs.length) {
+                int size = Math.max(slot + 1, layout.size());
+                ints = Arrays.copyOf(ints, size);
+                refs = Arrays.copyOf(refs, size);
+                shared = false;
+            } else if (shared) {
+                ints = ints.clone();
+                refs = refs.clone();
+                shared = false;
+            }
+        }
+    }
+
+    /**
+     * Marks slots whose value is in {@link #ints}. Absent slots hold
+     * {@code null}.
+     */
+    private static final Object INT = new Object();
+
+    /**
+     * Marks slots holding a {@code null} value.
+     */
+    private static final Object NULL = new Object();
+
+    private final Layout layout;
+    private final int[] ints;
+    private final Object[] refs;
+    private final int size;
+    private int hash;
+    private boolean hashIsZero;
+    private Set<Map.Entry<String, Object>> entries;
+
+    public static Environment empty(Layout layout) {
+        return new Environment(layout, new int[0], new Object[0]);
+    }
+
+    /**
+     * @param layout The layout of the returned environment.
+     * @param eval A variable evaluation.
+     * @return An environment with the same entries as {@code eval}. If
+     * {@code eval} is already an environment using {@code layout}, it is
+     * returned as is.
+     */
+    public static Environment of(Layout layout, Map<String, ?> eval) {
+        if (eval instanceof Environment && ((Environment) eval).layout == layout) {
+            return (Environment) eval;
+        }
+        Editor editor = empty(layout).edit();
+        eval.forEach(editor::set);
+        return editor.done();
+    }
+
+    private Environment(Layout layout, int[] ints, Object[] refs) {
+        this.layout = layout;
+        this.ints = ints;
+        this.refs = refs;
+        int count = 0;
+        for (Object ref : refs) {
+            if (ref != null) {
+                count++;
+            }
+        }
+        size = count;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @param slot A slot of this environment's layout, or {@code -1}.
+     * @return {@code true} iff the slot has a value.
+     */
+    public boolean isSet(int slot) {
+        return slot >= 0 && slot < refs.length && refs[slot] != null;
+    }
+
+    /**
+     * Reads an integer variable. As in the NanoPromela semantics, variables
+     * with no value read as {@code 0}.
+     *
+     * @param slot A slot of this environment's layout, or {@code -1}.
+     * @return The value in the slot, or {@code 0} if it has none (or holds
+     * {@code null}).
+     * @throws ClassCastException if the slot holds a non-integer value.
+     */
+    public int getInt(int slot) {
+        if (!isSet(slot)) {
+            return 0;
+        }
+        Object ref = refs[slot];
+        if (ref == INT) {
+            return ints[slot];
+        }
+        return (ref == NULL) ? 0 : (Integer) ref;
+    }
+
+    /**
+     * @param slot A slot of this environment's layout, or {@code -1}.
+     * @return The value in the slot, or {@code null} if it has none.
+     */
+    public Object getValue(int slot) {
+        if (!isSet(slot)) {
+            return null;
+        }
+        Object ref = refs[slot];
+        return (ref == INT) ? Integer.valueOf(ints[slot]) : unmask(ref);
+    }
+
+    public Environment withInt(int slot, int value) {
+        return edit().setInt(slot, value).done();
+    }
+
+    public Environment with(int slot, Object value) {
+        return edit().set(slot, value).done();
+    }
+
+    public Environment with(String name, Object value) {
+        return with(layout.slotOf(name), value);
+    }
+
+    /**
+     * @return An editor starting from the values of {@code this}.
+     */
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return (key instanceof String) ? getValue(layout.lookup((String) key)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof String) && isSet(layout.lookup((String) key));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && !hashIsZero) {
+            for (int slot = 0; slot < refs.length; slot++) {
+                if (refs[slot] != null) {
+                    Object value = getValue(slot);
+                    h += layout.nameOf(slot).hashCode() ^ (value == null ? 0 : value.hashCode());
+                }
+            }
+            if (h == 0) {
+                hashIsZero = true;
+            } else {
+                hash = h;
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Environment) || ((Environment) o).layout != layout) {
+            return super.equals(o);
+        }
+
+        Environment other = (Environment) o;
+        if (size != other.size || hashCode() != other.hashCode()) {
+            return false;
+        }
+        int common = Math.min(refs.length, other.refs.length);
+        for (int slot = 0; slot < common; slot++) {
+            Object mine = refs[slot];
+            Object theirs = other.refs[slot];
+            if (mine == INT && theirs == INT) {
+                if (ints[slot] != other.ints[slot]) {
+                    return false;
+                }
+            } else if ((mine == null) != (theirs == null)) {
+                return false;
+            } else if (mine != null && !Objects.equals(getValue(slot), other.getValue(slot))) {
+                return false;
+            }
+        }
+        // Equal sizes and equal common slots leave no set slots past them.
+        return true;
+    }
+
+    private static Object unmask(Object ref) {
+        return (ref == NULL) ? null : ref;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = advance(0);
+
+        private int advance(int from) {
+            int slot = from;
+            while (slot < refs.length && refs[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < refs.length;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int slot = next;
+            next = advance(slot + 1);
+            return new SimpleImmutableEntry<>(layout.nameOf(slot), getValue(slot));
+        }
+    }
+
+}
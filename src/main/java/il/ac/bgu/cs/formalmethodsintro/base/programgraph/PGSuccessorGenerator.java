@@ -0,0 +1,35 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The parts of a program graph needed to explore its state space: initial
+ * locations, initializations, and the transitions leaving a location.
+ * Implementations may compute the transitions on demand, rather than store
+ * them, so that only the locations actually reached are ever expanded.
+ *
+ * @param <L> Type of the locations.
+ * @param <A> Type of the actions.
+ */
+public interface PGSuccessorGenerator<L, A> {
+
+    /**
+     * @return The initial locations.
+     */
+    Set<L> getInitialLocations();
+
+    /**
+     * @return The initialization lists, as in
+     * {@link ProgramGraph#addInitalization(java.util.List)}.
+     */
+    Set<List<String>> getInitalizations();
+
+    /**
+     * @param location A location.
+     * @return The transitions whose source is {@code location}.
+     */
+    Collection<PGTransition<L, A>> getOutgoingTransitions(L location);
+
+}
@@ -0,0 +1,289 @@
+package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Builds the transition system of a program graph (or of anything that can
+ * list the transitions leaving a location) using several threads. The result
+ * is the same as the one of the sequential translation in
+ * {@link il.ac.bgu.cs.formalmethodsintro.base.FvmFacade}: the same states,
+ * initial states, transitions, actions and labels.
+ *
+ * Each worker owns a frontier deque. It expands its own newest states first,
+ * and when its deque is empty it steals the oldest states of the other
+ * workers. States are claimed through one concurrent visited set, so each
+ * state is expanded exactly once. Transitions and taken conditions are kept in
+ * per-worker buffers and merged into the transition system after all workers
+ * are done, so the (non thread-safe) {@link TransitionSystem} is only touched
+ * by the calling thread.
+ *
+ * The action and condition definitions are called by several threads at once,
+ * and so must be thread-safe. The parser-based definitions are.
+ *
+ * @param <L> Type of the locations.
+ * @param <A> Type of the actions.
+ */
+public class ParallelStateSpaceExplorer<L, A> {
+
+    private final PGSuccessorGenerator<L, A> pg;
+    private final Set<ActionDef> actionDefs;
+    private final Set<ConditionDef> conditionDefs;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public ParallelStateSpaceExplorer(PGSuccessorGenerator<L, A> pg, Set<ActionDef> actionDefs,
+            Set<ConditionDef> conditionDefs) {
+        this.pg = pg;
+        this.actionDefs = actionDefs;
+        this.conditionDefs = conditionDefs;
+    }
+
+    /**
+     * @param threads Number of worker threads. Defaults to the number of
+     * available processors.
+     * @return {@code this}.
+     */
+    public ParallelStateSpaceExplorer<L, A> threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, got " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public TransitionSystem<Pair<L, Map<String, Object>>, A, String> explore() {
+        TransitionSystem<Pair<L, Map<String, Object>>, A, String> ts = new TransitionSystem<>();
+        Environment.Layout layout = new Environment.Layout();
+        for (Pair<L, Map<String, Object>> initial : initialStates(layout)) {
+            ts.addInitialState(initial);
+        }
+
+        Set<Pair<L, Map<String, Object>>> visited = ConcurrentHashMap.newKeySet();
+        List<Worker> workers = new ArrayList<>(threads);
+        AtomicLong pending = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(i, workers, layout, visited, pending, failed));
+        }
+        int next = 0;
+        for (Pair<L, Map<String, Object>> initial : ts.getInitialStates()) {
+            visited.add(initial);
+            pending.incrementAndGet();
+            workers.get(next).frontier.addLast(initial);
+            next = (next + 1) % threads;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "state-space-explorer");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            runAll(pool, workers);
+
+            Set<String> conditions = new LinkedHashSet<>();
+            for (Worker worker : workers) {
+                for (TSTransition<Pair<L, Map<String, Object>>, A> t : worker.transitions) {
+                    ts.addTransition(t);
+                }
+                conditions.addAll(worker.conditions);
+            }
+
+            label(pool, ts, conditions);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return ts;
+    }
+
+    private Set<Pair<L, Map<String, Object>>> initialStates(Environment.Layout layout) {
+        Set<Pair<L, Map<String, Object>>> result = new LinkedHashSet<>();
+        Set<List<String>> initializations = pg.getInitalizations();
+        for (L l0 : pg.getInitialLocations()) {
+            if (initializations.isEmpty()) {
+                result.add(new Pair<>(l0, Environment.empty(layout)));
+            } else {
+                for (List<String> initialization : initializations) {
+                    Map<String, Object> env = Environment.empty(layout);
+                    for (String s : initialization) {
+                        env = ActionDef.effect(actionDefs, env, s);
+                    }
+                    result.add(new Pair<>(l0, Environment.of(layout, env)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Labels each state with the taken conditions it satisfies, and with its
+     * location, as in the sequential translation. The conditions are
+     * evaluated in parallel, each worker handling a stride of the states.
+     */
+    private void label(ExecutorService pool, TransitionSystem<Pair<L, Map<String, Object>>, A, String> ts,
+            Set<String> conditions) {
+        List<Pair<L, Map<String, Object>>> states = new ArrayList<>(ts.getStates());
+        List<List<String>> labels = new ArrayList<>(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            labels.add(null);
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        for (int w = 0; w < threads; w++) {
+            int first = w;
+            tasks.add(() -> {
+                for (int i = first; i < states.size(); i += threads) {
+                    List<String> label = new ArrayList<>();
+                    for (String cond : conditions) {
+                        if (ConditionDef.evaluate(conditionDefs, states.get(i).second, cond)) {
+                            label.add(cond);
+                        }
+                    }
+                    labels.set(i, label);
+                }
+                return null;
+            });
+        }
+        runAll(pool, tasks);
+
+        for (int i = 0; i < states.size(); i++) {
+            Pair<L, Map<String, Object>> state = states.get(i);
+            for (String cond : labels.get(i)) {
+                ts.addToLabel(state, cond);
+                ts.addToLabel(state, state.first.toString());
+            }
+        }
+    }
+
+    /**
+     * Runs all tasks to completion, rethrowing the first failure.
+     */
+    private static void runAll(ExecutorService pool, List<? extends Callable<Void>> tasks) {
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+            futures.add(pool.submit(task));
+        }
+        RuntimeException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while exploring the state space", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                if (failure == null) {
+                    failure = (cause instanceof RuntimeException) ? (RuntimeException) cause
+                            : new IllegalStateException(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private final class Worker implements Callable<Void> {
+
+        final ConcurrentLinkedDeque<Pair<L, Map<String, Object>>> frontier = new ConcurrentLinkedDeque<>();
+        final List<TSTransition<Pair<L, Map<String, Object>>, A>> transitions = new ArrayList<>();
+        final Set<String> conditions = new LinkedHashSet<>();
+
+        private final int index;
+        private final List<Worker> workers;
+        private final Environment.Layout layout;
+        private final Set<Pair<L, Map<String, Object>>> visited;
+        /**
+         * Number of states that were claimed but not yet expanded. The
+         * exploration is over when it drops to zero.
+         */
+        private final AtomicLong pending;
+        private final AtomicBoolean failed;
+
+        Worker(int index, List<Worker> workers, Environment.Layout layout, Set<Pair<L, Map<String, Object>>> visited,
+                AtomicLong pending, AtomicBoolean failed) {
+            this.index = index;
+            this.workers = workers;
+            this.layout = layout;
+            this.visited = visited;
+            this.pending = pending;
+            this.failed = failed;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                while (!failed.get()) {
+                    Pair<L, Map<String, Object>> state = frontier.pollLast();
+                    if (state == null) {
+                        state = steal();
+                    }
+                    if (state == null) {
+                        if (pending.get() == 0) {
+                            return null;
+                        }
+                        Thread.yield();
+                        continue;
+                    }
+                    try {
+                        expand(state);
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+                return null;
+            } catch (RuntimeException | Error ex) {
+                failed.set(true);
+                throw ex;
+            }
+        }
+
+        private Pair<L, Map<String, Object>> steal() {
+            for (int i = 1; i < workers.size(); i++) {
+                Pair<L, Map<String, Object>> state = workers.get((index + i) % workers.size()).frontier.pollFirst();
+                if (state != null) {
+                    return state;
+                }
+            }
+            return null;
+        }
+
+        private void expand(Pair<L, Map<String, Object>> state) {
+            for (PGTransition<L, A> trans : pg.getOutgoingTransitions(state.first)) {
+                if (ConditionDef.evaluate(conditionDefs, state.second, trans.getCondition())) {
+                    Map<String, Object> effect = ActionDef.effect(actionDefs, state.second, trans.getAction());
+                    if (effect != null) {
+                        Pair<L, Map<String, Object>> newSt = new Pair<>(trans.getTo(), Environment.of(layout, effect));
+                        conditions.add(trans.getCondition());
+                        transitions.add(new TSTransition<>(state, trans.getAction(), newSt));
+                        if (visited.add(newSt)) {
+                            pending.incrementAndGet();
+                            frontier.addLast(newSt);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -2,19 +2,13 @@ package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
 
 import java.util.Map;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.RecognitionException;
-
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.Evaluator;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaLexer;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.SpecContext;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.StmtContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParseCache;
 
 /**
  * An object that identifies and interprets the actions defined in the grammar
  * nanopromela/NanoPromela.g4
+ *
+ * Actions are parsed and compiled once, and cached, see {@link NanoPromelaParseCache}.
  */
 public class ParserBasedActDef implements ActionDef {
 
@@ -29,34 +23,7 @@ public class ParserBasedActDef implements ActionDef {
             return eval;
         }
 
-        return new Evaluator(eval).evaluate(parseAction((String) action));
-    }
-
-    /**
-     * Parse the action.
-     *
-     * @param action A string that represents an action
-     * @return The root of the parse tree or null, if the string cannot be
-     * parsed.
-     */
-    private StmtContext parseAction(String action) {
-        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(action));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        NanoPromelaParser parser = new NanoPromelaParser(tokens);
-
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new ThrowingErrorListener());
-
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ThrowingErrorListener());
-
-        try {
-            SpecContext spec = parser.spec();
-            StmtContext p = spec.stmt();
-            return p;
-        } catch (RecognitionException ex) {
-            return null;
-        }
+        return NanoPromelaParseCache.compiledAction((String) action).evaluate(eval);
     }
 
     /**
@@ -65,7 +32,7 @@ public class ParserBasedActDef implements ActionDef {
      */
     @Override
     public boolean isMatchingAction(Object action) {
-        return action.equals("") || parseAction((String) action) != null;
+        return action.equals("") || NanoPromelaParseCache.action((String) action) != null;
     }
 
 }
@@ -2,17 +2,13 @@ package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
 
 import java.util.Map;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.Evaluator;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaLexer;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser;
-import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParser.BoolexprContext;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParseCache;
 
 /**
  * An object that identifies and interprets the conditions defined in the
  * grammar nanopromela/NanoPromela.g4
+ *
+ * Conditions are parsed and compiled once, and cached, see {@link NanoPromelaParseCache}.
  */
 public class ParserBasedCondDef implements ConditionDef {
 
@@ -27,19 +23,7 @@ public class ParserBasedCondDef implements ConditionDef {
             return true;
         }
 
-        NanoPromelaLexer lexer = new NanoPromelaLexer(new ANTLRInputStream(condition));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        NanoPromelaParser parser = new NanoPromelaParser(tokens);
-
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new ThrowingErrorListener());
-
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ThrowingErrorListener());
-
-        BoolexprContext context = parser.boolexpr();
-
-        return new Evaluator(eval).evaluate(context);
+        return NanoPromelaParseCache.compiledCondition(condition).evaluate(eval);
     }
 
 }
@@ -1,8 +1,10 @@
 package il.ac.bgu.cs.formalmethodsintro.base.programgraph;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -12,7 +14,7 @@ import java.util.Set;
  * @param <L> Type of the locations.
  * @param <A> Type of the actions.
  */
-public class ProgramGraph<L, A> {
+public class ProgramGraph<L, A> implements PGSuccessorGenerator<L, A> {
 
     /**
      * The set of initial locations of the program graph.
@@ -29,6 +31,12 @@ public class ProgramGraph<L, A> {
      */
     private final Set<PGTransition<L, A>> transitions = new HashSet<>();
 
+    /**
+     * The transitions, indexed by their source location. Kept in sync with
+     * {@link #transitions}.
+     */
+    private final Map<L, Set<PGTransition<L, A>>> outgoing = new HashMap<>();
+
     /**
      * Initializations for the program.
      */
@@ -57,6 +65,7 @@ public class ProgramGraph<L, A> {
     /**
      * @return The set of initialization lists.
      */
+    @Override
     public Set<List<String>> getInitalizations() {
         return initializations;
     }
@@ -96,12 +105,15 @@ public class ProgramGraph<L, A> {
     public void addTransition(PGTransition<L, A> t) {
         addLocation(t.getFrom());
         addLocation(t.getTo());
-        transitions.add(t);
+        if (transitions.add(t)) {
+            outgoing.computeIfAbsent(t.getFrom(), l -> new HashSet<>()).add(t);
+        }
     }
 
     /**
      * @return The set of initial locations.
      */
+    @Override
     public Set<L> getInitialLocations() {
         return Collections.unmodifiableSet(initLocations);
     }
@@ -121,7 +133,19 @@ public class ProgramGraph<L, A> {
     }
 
     /**
-     * Removes a location from the program graph.
+     * @param location A location.
+     * @return The transitions whose source is {@code location}.
+     */
+    @Override
+    public Set<PGTransition<L, A>> getOutgoingTransitions(L location) {
+        Set<PGTransition<L, A>> out = outgoing.get(location);
+        return (out == null) ? Collections.emptySet() : Collections.unmodifiableSet(out);
+    }
+
+    /**
+     * Removes a location from the program graph. Transitions attached to the
+     * location are not removed, and remain listed by
+     * {@link #getOutgoingTransitions(Object)}.
      *
      * @param l A location to remove.
      */
@@ -135,7 +159,15 @@ public class ProgramGraph<L, A> {
      * @param t A transition to remove.
      */
     public void removeTransition(PGTransition<L, A> t) {
-        transitions.remove(t);
+        if (transitions.remove(t)) {
+            Set<PGTransition<L, A>> out = outgoing.get(t.getFrom());
+            if (out != null) {
+                out.remove(t);
+                if (out.isEmpty()) {
+                    outgoing.remove(t.getFrom());
+                }
+            }
+        }
     }
 
     /**
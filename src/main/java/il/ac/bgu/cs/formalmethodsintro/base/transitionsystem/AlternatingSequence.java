@@ -91,6 +91,32 @@ public class AlternatingSequence<S, A> {
         return (S) items.get(items.size() - 1);
     }
 
+    /**
+     * @return The states of {@code this}, in order (the items at the even
+     * positions).
+     */
+    @SuppressWarnings("unchecked")
+    public List<S> getStates() {
+        List<S> states = new ArrayList<>((items.size() + 1) / 2);
+        for (int i = 0; i < items.size(); i += 2) {
+            states.add((S) items.get(i));
+        }
+        return states;
+    }
+
+    /**
+     * @return The actions of {@code this}, in order (the items at the odd
+     * positions).
+     */
+    @SuppressWarnings("unchecked")
+    public List<A> getActions() {
+        List<A> actions = new ArrayList<>(items.size() / 2);
+        for (int i = 1; i < items.size(); i += 2) {
+            actions.add((A) items.get(i));
+        }
+        return actions;
+    }
+
     public int size() {
         return items.size();
     }
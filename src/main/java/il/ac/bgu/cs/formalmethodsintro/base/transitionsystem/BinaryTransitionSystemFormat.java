@@ -0,0 +1,252 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.TSSerializationHelper;
+
+/**
+ * Stores and loads transition systems in a compact binary format, as an
+ * alternative to {@link TransitionSystemXmlFormat}. States, actions and
+ * atomic propositions are written once each, in a table of strings, and
+ * referred to by index everywhere else. All integers are unsigned varints
+ * (7 bits per byte, low bits first). The layout, version 1, is:
+ * <pre>
+ * magic "FVTS", version
+ * has name (0 or 1), [name string]
+ * string count, strings (byte length and UTF-8 bytes)
+ * state count, string index of each state
+ * action count, string index of each action
+ * proposition count, string index of each proposition
+ * initial state count, initial state ids in increasing order, as gaps
+ * for each state: edge count, (action id, target id) per edge
+ * for each state: label bits, ceil(propositions / 8) bytes
+ * </pre>
+ * Systems over other types than {@code String} are written through a
+ * {@link TSSerializationHelper}, and read back as systems of strings.
+ */
+public class BinaryTransitionSystemFormat {
+
+    static final int MAGIC = 0x46565453;
+    static final int VERSION = 1;
+
+    public void write(TransitionSystem<String, String, String> ts, OutputStream output) throws IOException {
+        write(CompactTransitionSystem.from(ts), TSSerializationHelper.identity(), output);
+    }
+
+    public <S, A, P> void write(TransitionSystem<S, A, P> ts, TSSerializationHelper<S, A, P> helper,
+            OutputStream output) throws IOException {
+        write(CompactTransitionSystem.from(ts), helper, output);
+    }
+
+    /**
+     * Writes {@code ts} to {@code output}, naming its parts with
+     * {@code helper}. Parts with the same name are merged when read back.
+     */
+    public <S, A, P> void write(IndexedTransitionSystem<S, A, P> ts, TSSerializationHelper<S, A, P> helper,
+            OutputStream output) throws IOException {
+        int stateCount = ts.getStateCount();
+        int actionCount = ts.getActionCount();
+        int apCount = ts.getAtomicPropositionCount();
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int[] stateNames = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            stateNames[s] = intern(strings, helper.serializeState(ts.getState(s)));
+        }
+        int[] actionNames = new int[actionCount];
+        for (int a = 0; a < actionCount; a++) {
+            actionNames[a] = intern(strings, helper.serializeAction(ts.getAction(a)));
+        }
+        int[] apNames = new int[apCount];
+        for (int p = 0; p < apCount; p++) {
+            apNames[p] = intern(strings, helper.serializeAtomicProposition(ts.getAtomicProposition(p)));
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        writeVarint(out, VERSION);
+        writeVarint(out, (ts.getName() == null) ? 0 : 1);
+        if (ts.getName() != null) {
+            writeString(out, ts.getName());
+        }
+
+        writeVarint(out, strings.size());
+        for (String string : strings.keySet()) {
+            writeString(out, string);
+        }
+        writeIndices(out, stateNames);
+        writeIndices(out, actionNames);
+        writeIndices(out, apNames);
+
+        // Sorted, so the gaps are small and never negative.
+        int[] initial = ts.getInitialStateIds();
+        Arrays.sort(initial);
+        writeVarint(out, initial.length);
+        int previous = 0;
+        for (int s : initial) {
+            writeVarint(out, s - previous);
+            previous = s;
+        }
+
+        for (int s = 0; s < stateCount; s++) {
+            writeVarint(out, ts.getPostEnd(s) - ts.getPostStart(s));
+            for (int e = ts.getPostStart(s); e < ts.getPostEnd(s); e++) {
+                writeVarint(out, ts.getPostAction(e));
+                writeVarint(out, ts.getPostTarget(e));
+            }
+        }
+
+        byte[] labelBytes = new byte[(apCount + 7) >>> 3];
+        for (int s = 0; s < stateCount; s++) {
+            byte[] bits = ts.getLabel(s).toByteArray();
+            System.arraycopy(bits, 0, labelBytes, 0, bits.length);
+            Arrays.fill(labelBytes, bits.length, labelBytes.length, (byte) 0);
+            out.write(labelBytes);
+        }
+        out.flush();
+    }
+
+    public TransitionSystem<String, String, String> read(InputStream input) throws IOException {
+        return readCompact(input).toTransitionSystem();
+    }
+
+    /**
+     * Reads a transition system directly into a
+     * {@link CompactTransitionSystem}.
+     */
+    public CompactTransitionSystem<String, String, String> readCompact(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary transition system");
+        }
+        int version = readVarint(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary transition system version " + version);
+        }
+
+        CompactTransitionSystem.Builder<String, String, String> builder = new CompactTransitionSystem.Builder<>();
+        if (readVarint(in) == 1) {
+            builder.setName(readString(in));
+        }
+
+        String[] strings = new String[readVarint(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+        int[] states = readIds(in, strings, builder::addState);
+        int[] actions = readIds(in, strings, builder::addAction);
+        int[] aps = readIds(in, strings, builder::addAtomicProposition);
+
+        int initialCount = readVarint(in);
+        int state = 0;
+        for (int i = 0; i < initialCount; i++) {
+            state += readVarint(in);
+            builder.addInitialState(states[checkId(state, states.length)]);
+        }
+
+        for (int s = 0; s < states.length; s++) {
+            int edges = readVarint(in);
+            for (int e = 0; e < edges; e++) {
+                int action = checkId(readVarint(in), actions.length);
+                int target = checkId(readVarint(in), states.length);
+                builder.addTransition(states[s], actions[action], states[target]);
+            }
+        }
+
+        byte[] labelBytes = new byte[(aps.length + 7) >>> 3];
+        for (int s = 0; s < states.length; s++) {
+            in.readFully(labelBytes);
+            BitSet label = BitSet.valueOf(labelBytes);
+            for (int p = label.nextSetBit(0); p >= 0; p = label.nextSetBit(p + 1)) {
+                builder.addToLabel(states[s], aps[checkId(p, aps.length)]);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @FunctionalInterface
+    private interface Interner {
+
+        int intern(String name);
+    }
+
+    private static int[] readIds(DataInputStream in, String[] strings, Interner interner) throws IOException {
+        int[] ids = new int[readVarint(in)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = interner.intern(strings[checkId(readVarint(in), strings.length)]);
+        }
+        return ids;
+    }
+
+    private static int checkId(int id, int count) throws IOException {
+        if (id < 0 || id >= count) {
+            throw new IOException("Index " + id + " out of range, expected less than " + count);
+        }
+        return id;
+    }
+
+    private static int intern(Map<String, Integer> strings, String string) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    private static void writeIndices(DataOutputStream out, int[] indices) throws IOException {
+        writeVarint(out, indices.length);
+        for (int index : indices) {
+            writeVarint(out, index);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+}
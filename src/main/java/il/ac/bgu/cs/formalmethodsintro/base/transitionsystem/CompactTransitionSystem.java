@@ -0,0 +1,422 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.IntArrayList;
+
+/**
+ * An immutable transition system stored in primitive arrays. States, actions
+ * and atomic propositions are interned to dense {@code int} ids; transitions
+ * are kept as compressed-sparse-row offset/target/action arrays (in both
+ * directions), and labels as one bit set per state.
+ *
+ * Instances are created from a {@link TransitionSystem} using
+ * {@link #from(TransitionSystem)}, or incrementally through a
+ * {@link Builder}. {@link #toTransitionSystem()} converts back.
+ *
+ * @param <S> Type of the states.
+ * @param <A> Type of the actions.
+ * @param <P> Type of the atomic propositions.
+ */
+public class CompactTransitionSystem<S, A, P> implements IndexedTransitionSystem<S, A, P> {
+
+    private final String name;
+
+    private final Object[] states;
+    private final Object[] actions;
+    private final Object[] aps;
+    private final Map<S, Integer> stateIds;
+    private final Map<A, Integer> actionIds;
+    private final Map<P, Integer> apIds;
+
+    private final int[] initialStates;
+    private final BitSet initialSet;
+
+    private final int[] postOffsets;
+    private final int[] postTargets;
+    private final int[] postActions;
+
+    private final int[] preOffsets;
+    private final int[] preSources;
+    private final int[] preActions;
+
+    /**
+     * Label bits, {@code labelStride} words per state.
+     */
+    private final long[] labels;
+    private final int labelStride;
+
+    /**
+     * Creates a compact copy of {@code ts}.
+     *
+     * @param <S> Type of the states.
+     * @param <A> Type of the actions.
+     * @param <P> Type of the atomic propositions.
+     * @param ts The transition system to copy.
+     * @return A compact transition system equivalent to {@code ts}.
+     */
+    public static <S, A, P> CompactTransitionSystem<S, A, P> from(TransitionSystem<S, A, P> ts) {
+        Builder<S, A, P> builder = new Builder<>();
+        builder.setName(ts.getName());
+        ts.getStates().forEach(builder::addState);
+        ts.getActions().forEach(builder::addAction);
+        ts.getAtomicPropositions().forEach(builder::addAtomicProposition);
+        ts.getInitialStates().forEach(s -> builder.addInitialState(builder.addState(s)));
+        ts.getTransitions().forEach(t -> builder.addTransition(
+                builder.addState(t.getFrom()), builder.addAction(t.getAction()), builder.addState(t.getTo())));
+        ts.getLabelingFunction().forEach((s, label) -> {
+            int sid = builder.addState(s);
+            label.forEach(ap -> builder.addToLabel(sid, builder.addAtomicProposition(ap)));
+        });
+        return builder.build();
+    }
+
+    private CompactTransitionSystem(Builder<S, A, P> b) {
+        name = b.name;
+        states = b.states.toArray();
+        actions = b.actions.toArray();
+        aps = b.aps.toArray();
+        stateIds = b.stateIds;
+        actionIds = b.actionIds;
+        apIds = b.apIds;
+
+        int n = states.length;
+        initialSet = new BitSet(n);
+        for (int i = 0; i < b.initial.size(); i++) {
+            initialSet.set(b.initial.get(i));
+        }
+        initialStates = initialSet.stream().toArray();
+
+        // Forward CSR, sorted by (action, target) within each state so that
+        // duplicate edges can be dropped.
+        int m = b.edgeFrom.size();
+        int[] counts = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            counts[b.edgeFrom.get(e) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            counts[i + 1] += counts[i];
+        }
+        long[] keys = new long[m];
+        int[] cursor = Arrays.copyOf(counts, n);
+        for (int e = 0; e < m; e++) {
+            keys[cursor[b.edgeFrom.get(e)]++] = ((long) b.edgeAction.get(e) << 32) | b.edgeTo.get(e);
+        }
+
+        postOffsets = new int[n + 1];
+        int unique = 0;
+        for (int s = 0; s < n; s++) {
+            Arrays.sort(keys, counts[s], counts[s + 1]);
+            postOffsets[s] = unique;
+            for (int k = counts[s]; k < counts[s + 1]; k++) {
+                if (k == counts[s] || keys[k] != keys[k - 1]) {
+                    keys[unique++] = keys[k];
+                }
+            }
+        }
+        postOffsets[n] = unique;
+        postTargets = new int[unique];
+        postActions = new int[unique];
+        for (int e = 0; e < unique; e++) {
+            postActions[e] = (int) (keys[e] >>> 32);
+            postTargets[e] = (int) keys[e];
+        }
+
+        // Backward CSR, derived from the de-duplicated forward edges.
+        preOffsets = new int[n + 1];
+        for (int e = 0; e < unique; e++) {
+            preOffsets[postTargets[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            preOffsets[i + 1] += preOffsets[i];
+        }
+        preSources = new int[unique];
+        preActions = new int[unique];
+        cursor = Arrays.copyOf(preOffsets, n);
+        for (int s = 0; s < n; s++) {
+            for (int e = postOffsets[s]; e < postOffsets[s + 1]; e++) {
+                int pos = cursor[postTargets[e]]++;
+                preSources[pos] = s;
+                preActions[pos] = postActions[e];
+            }
+        }
+
+        labelStride = (aps.length + 63) >>> 6;
+        labels = new long[n * labelStride];
+        for (int i = 0; i < b.labelStates.size(); i++) {
+            int ap = b.labelAps.get(i);
+            labels[b.labelStates.get(i) * labelStride + (ap >>> 6)] |= 1L << ap;
+        }
+    }
+
+    /**
+     * Creates a {@link TransitionSystem} holding the same states, actions,
+     * propositions, transitions and labels as {@code this}.
+     *
+     * @return A new, mutable transition system.
+     */
+    public TransitionSystem<S, A, P> toTransitionSystem() {
+        TransitionSystem<S, A, P> ts = new TransitionSystem<>();
+        ts.setName(name);
+        for (int s = 0; s < states.length; s++) {
+            ts.addState(getState(s));
+        }
+        for (int a = 0; a < actions.length; a++) {
+            ts.addAction(getAction(a));
+        }
+        for (int p = 0; p < aps.length; p++) {
+            ts.addAtomicProposition(getAtomicProposition(p));
+        }
+        for (int s : initialStates) {
+            ts.addInitialState(getState(s));
+        }
+        for (int s = 0; s < states.length; s++) {
+            for (int e = postOffsets[s]; e < postOffsets[s + 1]; e++) {
+                ts.addTransition(new TSTransition<>(getState(s), getAction(postActions[e]), getState(postTargets[e])));
+            }
+            BitSet label = getLabel(s);
+            for (int p = label.nextSetBit(0); p >= 0; p = label.nextSetBit(p + 1)) {
+                ts.addToLabel(getState(s), getAtomicProposition(p));
+            }
+        }
+        return ts;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getStateCount() {
+        return states.length;
+    }
+
+    @Override
+    public int getActionCount() {
+        return actions.length;
+    }
+
+    @Override
+    public int getAtomicPropositionCount() {
+        return aps.length;
+    }
+
+    @Override
+    public int getTransitionCount() {
+        return postTargets.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public S getState(int stateId) {
+        return (S) states[stateId];
+    }
+
+    @Override
+    public int getStateId(S state) {
+        return stateIds.getOrDefault(state, -1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public A getAction(int actionId) {
+        return (A) actions[actionId];
+    }
+
+    @Override
+    public int getActionId(A action) {
+        return actionIds.getOrDefault(action, -1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public P getAtomicProposition(int apId) {
+        return (P) aps[apId];
+    }
+
+    @Override
+    public int getAtomicPropositionId(P ap) {
+        return apIds.getOrDefault(ap, -1);
+    }
+
+    @Override
+    public int[] getInitialStateIds() {
+        return initialStates.clone();
+    }
+
+    @Override
+    public boolean isInitial(int stateId) {
+        return initialSet.get(stateId);
+    }
+
+    @Override
+    public int getPostStart(int stateId) {
+        return postOffsets[stateId];
+    }
+
+    @Override
+    public int getPostEnd(int stateId) {
+        return postOffsets[stateId + 1];
+    }
+
+    @Override
+    public int getPostTarget(int edge) {
+        return postTargets[edge];
+    }
+
+    @Override
+    public int getPostAction(int edge) {
+        return postActions[edge];
+    }
+
+    @Override
+    public int getPreStart(int stateId) {
+        return preOffsets[stateId];
+    }
+
+    @Override
+    public int getPreEnd(int stateId) {
+        return preOffsets[stateId + 1];
+    }
+
+    @Override
+    public int getPreSource(int edge) {
+        return preSources[edge];
+    }
+
+    @Override
+    public int getPreAction(int edge) {
+        return preActions[edge];
+    }
+
+    @Override
+    public boolean hasLabel(int stateId, int apId) {
+        return (labels[stateId * labelStride + (apId >>> 6)] & (1L << apId)) != 0;
+    }
+
+    @Override
+    public BitSet getLabel(int stateId) {
+        return BitSet.valueOf(Arrays.copyOfRange(labels, stateId * labelStride, (stateId + 1) * labelStride));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "[CompactTransitionSystem name=" + name + " %d states (%d initial), %d actions, %d transitions, %d atomicPropositions]",
+                states.length, initialStates.length, actions.length, postTargets.length, aps.length
+        );
+    }
+
+    /**
+     * Incrementally builds a {@link CompactTransitionSystem}. The
+     * {@code add...} methods intern their argument and return its id; they are
+     * idempotent. Duplicate transitions are dropped by {@link #build()}.
+     *
+     * @param <S> Type of the states.
+     * @param <A> Type of the actions.
+     * @param <P> Type of the atomic propositions.
+     */
+    public static class Builder<S, A, P> {
+
+        private String name;
+
+        private final List<S> states = new ArrayList<>();
+        private final List<A> actions = new ArrayList<>();
+        private final List<P> aps = new ArrayList<>();
+        private final Map<S, Integer> stateIds = new HashMap<>();
+        private final Map<A, Integer> actionIds = new HashMap<>();
+        private final Map<P, Integer> apIds = new HashMap<>();
+
+        private final IntArrayList initial = new IntArrayList();
+        private final IntArrayList edgeFrom = new IntArrayList();
+        private final IntArrayList edgeAction = new IntArrayList();
+        private final IntArrayList edgeTo = new IntArrayList();
+        private final IntArrayList labelStates = new IntArrayList();
+        private final IntArrayList labelAps = new IntArrayList();
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int addState(S state) {
+            if (state == null) {
+                throw new IllegalArgumentException("Cannot add a null state");
+            }
+            return intern(state, states, stateIds);
+        }
+
+        public int addAction(A action) {
+            return intern(action, actions, actionIds);
+        }
+
+        public int addAtomicProposition(P ap) {
+            if (ap == null) {
+                throw new IllegalArgumentException("Cannot add a null proposition");
+            }
+            return intern(ap, aps, apIds);
+        }
+
+        /**
+         * @return The id of {@code state}, or {@code -1} if it was not added.
+         */
+        public int getStateId(S state) {
+            return stateIds.getOrDefault(state, -1);
+        }
+
+        /**
+         * @return The id of {@code action}, or {@code -1} if it was not added.
+         */
+        public int getActionId(A action) {
+            return actionIds.getOrDefault(action, -1);
+        }
+
+        public void addInitialState(int stateId) {
+            initial.add(checkState(stateId));
+        }
+
+        public void addTransition(int fromId, int actionId, int toId) {
+            if (actionId < 0 || actionId >= actions.size()) {
+                throw new IllegalArgumentException("Unknown action id " + actionId);
+            }
+            edgeFrom.add(checkState(fromId));
+            edgeAction.add(actionId);
+            edgeTo.add(checkState(toId));
+        }
+
+        public void addToLabel(int stateId, int apId) {
+            if (apId < 0 || apId >= aps.size()) {
+                throw new IllegalArgumentException("Unknown atomic proposition id " + apId);
+            }
+            labelStates.add(checkState(stateId));
+            labelAps.add(apId);
+        }
+
+        public CompactTransitionSystem<S, A, P> build() {
+            return new CompactTransitionSystem<>(this);
+        }
+
+        private int checkState(int stateId) {
+            if (stateId < 0 || stateId >= states.size()) {
+                throw new IllegalArgumentException("Unknown state id " + stateId);
+            }
+            return stateId;
+        }
+
+        private static <T> int intern(T item, List<T> items, Map<T, Integer> ids) {
+            Integer id = ids.get(item);
+            if (id == null) {
+                id = items.size();
+                items.add(item);
+                ids.put(item, id);
+            }
+            return id;
+        }
+    }
+
+}
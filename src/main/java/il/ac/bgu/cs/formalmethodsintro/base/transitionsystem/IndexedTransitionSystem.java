@@ -0,0 +1,107 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.util.BitSet;
+
+/**
+ * A read-only view of a transition system whose states, actions and atomic
+ * propositions are identified by dense {@code int} ids, starting at
+ * {@code 0}. Transitions are exposed in compressed-sparse-row form: the
+ * outgoing edges of state {@code s} are the edge indices in
+ * {@code [getPostStart(s), getPostEnd(s))}, and likewise for incoming edges.
+ *
+ * Analyses that only need the graph structure can run on this view using
+ * primitive arrays, and translate ids back to objects only when reporting
+ * results.
+ *
+ * @param <S> Type of the states.
+ * @param <A> Type of the actions.
+ * @param <P> Type of the atomic propositions.
+ */
+public interface IndexedTransitionSystem<S, A, P> {
+
+    String getName();
+
+    int getStateCount();
+
+    int getActionCount();
+
+    int getAtomicPropositionCount();
+
+    int getTransitionCount();
+
+    S getState(int stateId);
+
+    /**
+     * @param state A state.
+     * @return The id of {@code state}, or {@code -1} if it is not a state of
+     * {@code this}.
+     */
+    int getStateId(S state);
+
+    A getAction(int actionId);
+
+    /**
+     * @param action An action.
+     * @return The id of {@code action}, or {@code -1} if it is not an action
+     * of {@code this}.
+     */
+    int getActionId(A action);
+
+    P getAtomicProposition(int apId);
+
+    /**
+     * @param ap An atomic proposition.
+     * @return The id of {@code ap}, or {@code -1} if it is not an atomic
+     * proposition of {@code this}.
+     */
+    int getAtomicPropositionId(P ap);
+
+    /**
+     * @return A fresh array holding the ids of the initial states.
+     */
+    int[] getInitialStateIds();
+
+    boolean isInitial(int stateId);
+
+    /**
+     * @param stateId A state id.
+     * @return Index of the first outgoing edge of the state.
+     */
+    int getPostStart(int stateId);
+
+    /**
+     * @param stateId A state id.
+     * @return Index one past the last outgoing edge of the state.
+     */
+    int getPostEnd(int stateId);
+
+    int getPostTarget(int edge);
+
+    int getPostAction(int edge);
+
+    /**
+     * @param stateId A state id.
+     * @return Index of the first incoming edge of the state.
+     */
+    int getPreStart(int stateId);
+
+    /**
+     * @param stateId A state id.
+     * @return Index one past the last incoming edge of the state.
+     */
+    int getPreEnd(int stateId);
+
+    int getPreSource(int edge);
+
+    int getPreAction(int edge);
+
+    boolean hasLabel(int stateId, int apId);
+
+    /**
+     * @param stateId A state id.
+     * @return A fresh bit set of the ids of the propositions labeling the
+     * state.
+     */
+    BitSet getLabel(int stateId);
+
+}
@@ -0,0 +1,494 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.TSSerializationHelper;
+
+/**
+ * A read-only transition system kept in a file and mapped into memory, so
+ * that state spaces larger than the heap can be analysed. The file holds the
+ * same compressed-sparse-row arrays as a {@link CompactTransitionSystem};
+ * each array is mapped on its own, and read in place by every accessor. Only
+ * the names of the actions and atomic propositions are loaded onto the heap.
+ * States are found by name through a hash table stored in the file.
+ *
+ * Files are created by {@link #write(IndexedTransitionSystem, TSSerializationHelper, Path)}
+ * and opened by {@link #open(Path)}. All numbers are big-endian. The layout,
+ * version 1, is:
+ * <pre>
+ * header: magic "FVTM", version, has name (0 or 1), state count, action
+ *         count, proposition count, transition count, initial state count,
+ *         label words per state, hash slots, string bytes
+ * int[initial count]        initial state ids, in increasing order
+ * int[states + 1]           post offsets
+ * int[transitions] x 2      post targets, post actions
+ * int[states + 1]           pre offsets
+ * int[transitions] x 2      pre sources, pre actions
+ * long[states x words]      label bits
+ * int[strings + 1]          string offsets: states, actions, propositions, name
+ * int[hash slots]           state id + 1 per slot, 0 for empty, linear probing
+ * byte[string bytes]        UTF-8 strings
+ * </pre>
+ * Each array must fit in 2 GB, the most a single mapping can hold.
+ *
+ * The mappings stay valid until the instance is garbage collected; the file
+ * must not be changed while they are in use. Java offers no safe way to
+ * release them earlier, so on Windows the file can not be deleted until then.
+ */
+public class MappedTransitionSystem implements IndexedTransitionSystem<String, String, String> {
+
+    static final int MAGIC = 0x4656544D;
+    static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 10;
+    private static final int HEADER_BYTES = HEADER_INTS * Integer.BYTES + Long.BYTES;
+
+    /**
+     * The most hash slots whose table fits in a single mapping.
+     */
+    static final int MAX_SLOTS = 1 << 28;
+
+    private final String name;
+
+    private final int stateCount;
+    private final int transitionCount;
+    private final int labelStride;
+
+    private final String[] actions;
+    private final String[] aps;
+    private final Map<String, Integer> actionIds = new HashMap<>();
+    private final Map<String, Integer> apIds = new HashMap<>();
+
+    private final IntBuffer initialStates;
+    private final IntBuffer postOffsets;
+    private final IntBuffer postTargets;
+    private final IntBuffer postActions;
+    private final IntBuffer preOffsets;
+    private final IntBuffer preSources;
+    private final IntBuffer preActions;
+    private final LongBuffer labels;
+    private final IntBuffer stringOffsets;
+    private final IntBuffer stateTable;
+    private final ByteBuffer strings;
+
+    /**
+     * Maps the transition system stored in {@code file}.
+     *
+     * @param file A file written by {@link #write(IndexedTransitionSystem, TSSerializationHelper, Path)}.
+     * @return The transition system in {@code file}.
+     * @throws IOException if the file cannot be read, or is not in the
+     * expected format.
+     */
+    public static MappedTransitionSystem open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedTransitionSystem(channel);
+        }
+    }
+
+    private MappedTransitionSystem(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("Not a mapped transition system");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a mapped transition system");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped transition system version " + version);
+        }
+        boolean hasName = header.getInt() == 1;
+        stateCount = header.getInt();
+        int actionCount = header.getInt();
+        int apCount = header.getInt();
+        transitionCount = header.getInt();
+        int initialCount = header.getInt();
+        labelStride = header.getInt();
+        int hashSlots = header.getInt();
+        long stringBytes = header.getLong();
+        int stringCount = stateCount + actionCount + apCount + 1;
+
+        Sections sections = new Sections(channel, HEADER_BYTES);
+        initialStates = sections.ints(initialCount);
+        postOffsets = sections.ints(stateCount + 1L);
+        postTargets = sections.ints(transitionCount);
+        postActions = sections.ints(transitionCount);
+        preOffsets = sections.ints(stateCount + 1L);
+        preSources = sections.ints(transitionCount);
+        preActions = sections.ints(transitionCount);
+        labels = sections.map((long) stateCount * labelStride * Long.BYTES).asLongBuffer();
+        stringOffsets = sections.ints(stringCount + 1L);
+        stateTable = sections.ints(hashSlots);
+        strings = sections.map(stringBytes);
+        if (sections.position != channel.size()) {
+            throw new IOException("Mapped transition system has " + channel.size() + " bytes, expected "
+                    + sections.position);
+        }
+
+        actions = new String[actionCount];
+        for (int a = 0; a < actionCount; a++) {
+            actions[a] = string(stateCount + a);
+            actionIds.putIfAbsent(actions[a], a);
+        }
+        aps = new String[apCount];
+        for (int p = 0; p < apCount; p++) {
+            aps[p] = string(stateCount + actionCount + p);
+            apIds.putIfAbsent(aps[p], p);
+        }
+        name = hasName ? string(stringCount - 1) : null;
+    }
+
+    /**
+     * Maps consecutive sections of a file.
+     */
+    private static class Sections {
+
+        private final FileChannel channel;
+        private long position;
+
+        Sections(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        IntBuffer ints(long count) throws IOException {
+            return map(count * Integer.BYTES).asIntBuffer();
+        }
+
+        ByteBuffer map(long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Section of " + size + " bytes is too large to map");
+            }
+            if (position + size > channel.size()) {
+                throw new IOException("Mapped transition system is truncated");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return buffer;
+        }
+    }
+
+    public static void write(TransitionSystem<String, String, String> ts, Path file) throws IOException {
+        write(CompactTransitionSystem.from(ts), TSSerializationHelper.identity(), file);
+    }
+
+    public static <S, A, P> void write(TransitionSystem<S, A, P> ts, TSSerializationHelper<S, A, P> helper,
+            Path file) throws IOException {
+        write(CompactTransitionSystem.from(ts), helper, file);
+    }
+
+    /**
+     * Writes {@code ts} to {@code file}, naming its parts with {@code helper},
+     * so it can be opened by {@link #open(Path)}. States whose names clash
+     * are found by the id of the first of them.
+     *
+     * @throws IOException if the file cannot be written, or {@code ts} has
+     * {@link #MAX_SLOTS} states or more.
+     */
+    public static <S, A, P> void write(IndexedTransitionSystem<S, A, P> ts, TSSerializationHelper<S, A, P> helper,
+            Path file) throws IOException {
+        int n = ts.getStateCount();
+        if (n >= MAX_SLOTS) {
+            throw new IOException("Cannot map " + n + " states; at most " + (MAX_SLOTS - 1) + " are supported");
+        }
+        int actionCount = ts.getActionCount();
+        int apCount = ts.getAtomicPropositionCount();
+        int m = ts.getTransitionCount();
+        int stride = Math.max(1, (apCount + 63) >>> 6);
+
+        byte[][] names = new byte[n + actionCount + apCount + 1][];
+        int[] hashes = new int[n];
+        for (int s = 0; s < n; s++) {
+            String stateName = helper.serializeState(ts.getState(s));
+            names[s] = stateName.getBytes(StandardCharsets.UTF_8);
+            hashes[s] = stateName.hashCode();
+        }
+        for (int a = 0; a < actionCount; a++) {
+            names[n + a] = helper.serializeAction(ts.getAction(a)).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int p = 0; p < apCount; p++) {
+            names[n + actionCount + p] = helper.serializeAtomicProposition(ts.getAtomicProposition(p))
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        names[names.length - 1] = (ts.getName() == null) ? new byte[0] : ts.getName().getBytes(StandardCharsets.UTF_8);
+
+        // At most half full, so probes stay short, unless that would not fit
+        // in a single mapping. There is always an empty slot to end probes.
+        int slots = (int) Math.min((long) Integer.highestOneBit(Math.max(1, n)) << 2, MAX_SLOTS);
+        int[] table = new int[slots];
+        for (int s = 0; s < n; s++) {
+            int slot = hashes[s] & (slots - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot] = s + 1;
+        }
+
+        long stringBytes = 0;
+        for (byte[] bytes : names) {
+            stringBytes += bytes.length;
+        }
+        if (stringBytes > Integer.MAX_VALUE) {
+            throw new IOException("Names of " + stringBytes + " bytes are too large to map");
+        }
+
+        // Sorted, as isInitial searches them.
+        int[] initial = ts.getInitialStateIds();
+        Arrays.sort(initial);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((ts.getName() == null) ? 0 : 1);
+            out.writeInt(n);
+            out.writeInt(actionCount);
+            out.writeInt(apCount);
+            out.writeInt(m);
+            out.writeInt(initial.length);
+            out.writeInt(stride);
+            out.writeInt(slots);
+            out.writeLong(stringBytes);
+
+            for (int s : initial) {
+                out.writeInt(s);
+            }
+
+            for (int s = 0; s <= n; s++) {
+                out.writeInt((s < n) ? ts.getPostStart(s) : m);
+            }
+            for (int e = 0; e < m; e++) {
+                out.writeInt(ts.getPostTarget(e));
+            }
+            for (int e = 0; e < m; e++) {
+                out.writeInt(ts.getPostAction(e));
+            }
+            for (int s = 0; s <= n; s++) {
+                out.writeInt((s < n) ? ts.getPreStart(s) : m);
+            }
+            for (int e = 0; e < m; e++) {
+                out.writeInt(ts.getPreSource(e));
+            }
+            for (int e = 0; e < m; e++) {
+                out.writeInt(ts.getPreAction(e));
+            }
+
+            for (int s = 0; s < n; s++) {
+                long[] words = Arrays.copyOf(ts.getLabel(s).toLongArray(), stride);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : names) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+            for (byte[] bytes : names) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private String string(int index) {
+        int start = stringOffsets.get(index);
+        byte[] bytes = new byte[stringOffsets.get(index + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = strings.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {@code true} iff string {@code index} is {@code bytes}, compared
+     * in place.
+     */
+    private boolean stringEquals(int index, byte[] bytes) {
+        int start = stringOffsets.get(index);
+        if (stringOffsets.get(index + 1) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (strings.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public int getActionCount() {
+        return actions.length;
+    }
+
+    @Override
+    public int getAtomicPropositionCount() {
+        return aps.length;
+    }
+
+    @Override
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    @Override
+    public String getState(int stateId) {
+        if (stateId < 0 || stateId >= stateCount) {
+            throw new IndexOutOfBoundsException("State id " + stateId);
+        }
+        return string(stateId);
+    }
+
+    @Override
+    public int getStateId(String state) {
+        int slots = stateTable.capacity();
+        if (state == null) {
+            return -1;
+        }
+        byte[] bytes = state.getBytes(StandardCharsets.UTF_8);
+        for (int slot = state.hashCode() & (slots - 1);; slot = (slot + 1) & (slots - 1)) {
+            int entry = stateTable.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (stringEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    @Override
+    public String getAction(int actionId) {
+        return actions[actionId];
+    }
+
+    @Override
+    public int getActionId(String action) {
+        return actionIds.getOrDefault(action, -1);
+    }
+
+    @Override
+    public String getAtomicProposition(int apId) {
+        return aps[apId];
+    }
+
+    @Override
+    public int getAtomicPropositionId(String ap) {
+        return apIds.getOrDefault(ap, -1);
+    }
+
+    @Override
+    public int[] getInitialStateIds() {
+        int[] ids = new int[initialStates.capacity()];
+        initialStates.duplicate().get(ids);
+        return ids;
+    }
+
+    @Override
+    public boolean isInitial(int stateId) {
+        int low = 0;
+        int high = initialStates.capacity() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = initialStates.get(mid);
+            if (id < stateId) {
+                low = mid + 1;
+            } else if (id > stateId) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getPostStart(int stateId) {
+        return postOffsets.get(stateId);
+    }
+
+    @Override
+    public int getPostEnd(int stateId) {
+        return postOffsets.get(stateId + 1);
+    }
+
+    @Override
+    public int getPostTarget(int edge) {
+        return postTargets.get(edge);
+    }
+
+    @Override
+    public int getPostAction(int edge) {
+        return postActions.get(edge);
+    }
+
+    @Override
+    public int getPreStart(int stateId) {
+        return preOffsets.get(stateId);
+    }
+
+    @Override
+    public int getPreEnd(int stateId) {
+        return preOffsets.get(stateId + 1);
+    }
+
+    @Override
+    public int getPreSource(int edge) {
+        return preSources.get(edge);
+    }
+
+    @Override
+    public int getPreAction(int edge) {
+        return preActions.get(edge);
+    }
+
+    @Override
+    public boolean hasLabel(int stateId, int apId) {
+        return (labels.get(stateId * labelStride + (apId >>> 6)) & (1L << apId)) != 0;
+    }
+
+    @Override
+    public BitSet getLabel(int stateId) {
+        long[] words = new long[labelStride];
+        for (int i = 0; i < labelStride; i++) {
+            words[i] = labels.get(stateId * labelStride + i);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "[MappedTransitionSystem name=" + name + " %d states (%d initial), %d actions, %d transitions, %d atomicPropositions]",
+                stateCount, initialStates.capacity(), actions.length, transitionCount, aps.length
+        );
+    }
+
+}
@@ -0,0 +1,206 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.IntArrayList;
+
+/**
+ * Explores the states of an {@link IndexedTransitionSystem} that are reachable
+ * from a set of source states. The exploration is iterative, using an explicit
+ * work-queue over state ids and a {@link BitSet} of visited states, so it is
+ * not limited by the depth of the call stack.
+ *
+ * Usage:
+ * <pre>{@code
+ * BitSet reached = new ReachabilityEngine(cts).order(Order.DFS)
+ *                                             .maxDepth(10)
+ *                                             .run(cts.getInitialStateIds())
+ *                                             .getVisited();
+ * }</pre>
+ */
+public class ReachabilityEngine {
+
+    public enum Order {
+        BFS, DFS
+    }
+
+    /**
+     * Outcome of a single exploration.
+     */
+    public static class Result {
+
+        private final BitSet visited;
+        private final int found;
+
+        Result(BitSet visited, int found) {
+            this.visited = visited;
+            this.found = found;
+        }
+
+        /**
+         * @return The ids of the states visited by the exploration. When the
+         * exploration stopped early, this is only a subset of the reachable
+         * states.
+         */
+        public BitSet getVisited() {
+            return visited;
+        }
+
+        /**
+         * @return Id of the first state that matched the stop predicate, or
+         * {@code -1} if no state matched.
+         */
+        public int getFound() {
+            return found;
+        }
+
+        public boolean isFound() {
+            return found >= 0;
+        }
+    }
+
+    private final IndexedTransitionSystem<?, ?, ?> ts;
+    private Order order = Order.BFS;
+    private int maxDepth = -1;
+    private IntPredicate stopWhen = null;
+
+    public ReachabilityEngine(IndexedTransitionSystem<?, ?, ?> ts) {
+        this.ts = ts;
+    }
+
+    public ReachabilityEngine order(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Limits the exploration to states whose distance from the sources is at
+     * most {@code maxDepth}. A negative value means no limit.
+     *
+     * @param maxDepth The maximal number of transitions to follow.
+     * @return {@code this}.
+     */
+    public ReachabilityEngine maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Stops the exploration at the first visited state for which
+     * {@code predicate} holds.
+     *
+     * @param predicate A predicate over state ids, or {@code null} for none.
+     * @return {@code this}.
+     */
+    public ReachabilityEngine stopWhen(IntPredicate predicate) {
+        this.stopWhen = predicate;
+        return this;
+    }
+
+    /**
+     * Explores the system from the passed states.
+     *
+     * @param sources Ids of the states to start from.
+     * @return The result of the exploration.
+     */
+    public Result run(int... sources) {
+        return (order == Order.BFS) ? bfs(sources) : dfs(sources);
+    }
+
+    private Result bfs(int[] sources) {
+        int n = ts.getStateCount();
+        BitSet visited = new BitSet(n);
+        // Every state is enqueued at most once, so a plain array suffices.
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        for (int s : sources) {
+            if (!visited.get(s)) {
+                visited.set(s);
+                if (matches(s)) {
+                    return new Result(visited, s);
+                }
+                queue[tail++] = s;
+            }
+        }
+
+        int depth = 0;
+        int levelEnd = tail;
+        while (head < tail) {
+            if (head == levelEnd) {
+                depth++;
+                levelEnd = tail;
+            }
+            int s = queue[head++];
+            if (maxDepth >= 0 && depth >= maxDepth) {
+                continue;
+            }
+            for (int e = ts.getPostStart(s), end = ts.getPostEnd(s); e < end; e++) {
+                int t = ts.getPostTarget(e);
+                if (!visited.get(t)) {
+                    visited.set(t);
+                    if (matches(t)) {
+                        return new Result(visited, t);
+                    }
+                    queue[tail++] = t;
+                }
+            }
+        }
+        return new Result(visited, -1);
+    }
+
+    private Result dfs(int[] sources) {
+        int n = ts.getStateCount();
+        BitSet visited = new BitSet(n);
+        IntArrayList stack = new IntArrayList();
+        // With a depth limit, a state first reached through a long path may
+        // later be reached through a shorter one, and then needs to be expanded
+        // again. So we track the shortest depth seen for each state.
+        int[] depths = (maxDepth >= 0) ? new int[n] : null;
+
+        for (int s : sources) {
+            if (!visited.get(s)) {
+                visited.set(s);
+                if (matches(s)) {
+                    return new Result(visited, s);
+                }
+                stack.add(s);
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            int s = stack.removeLast();
+            int nextDepth = 0;
+            if (depths != null) {
+                nextDepth = depths[s] + 1;
+                if (nextDepth > maxDepth) {
+                    continue;
+                }
+            }
+            for (int e = ts.getPostStart(s), end = ts.getPostEnd(s); e < end; e++) {
+                int t = ts.getPostTarget(e);
+                if (!visited.get(t)) {
+                    visited.set(t);
+                    if (matches(t)) {
+                        return new Result(visited, t);
+                    }
+                    if (depths != null) {
+                        depths[t] = nextDepth;
+                    }
+                    stack.add(t);
+                } else if (depths != null && nextDepth < depths[t]) {
+                    depths[t] = nextDepth;
+                    stack.add(t);
+                }
+            }
+        }
+        return new Result(visited, -1);
+    }
+
+    private boolean matches(int stateId) {
+        return stopWhen != null && stopWhen.test(stateId);
+    }
+
+}
@@ -0,0 +1,198 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat.*;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidXmlException;
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.TransitionSystemPart;
+
+/**
+ * Reads transition systems in the XML format of
+ * {@link StAXTransitionSystemXmlFormat} with a StAX pull parser, passing each
+ * state, action, proposition, label and transition to a
+ * {@link TransitionSystemXmlConsumer} as soon as it is read. Nothing is kept
+ * but the names of the atomic propositions, which labels refer to by id, so
+ * a single pass over a large file, e.g. for statistics, takes constant
+ * memory beyond them.
+ *
+ * The first error stops the reading with an {@link InvalidXmlException}
+ * giving its position. Labels must be inside an entry and refer to a declared
+ * atomic proposition. Other references between parts are passed on
+ * unchecked, except by {@link #readCompact(Reader)}, which rejects states and
+ * actions that were not declared.
+ */
+public class StAXTransitionSystemXmlReader {
+
+    private final XMLInputFactory factory = XMLInputFactory.newFactory();
+
+    /**
+     * Reads the transition system from {@code input}, passing its parts to
+     * {@code consumer}.
+     */
+    public void read(Reader input, TransitionSystemXmlConsumer consumer) throws XMLStreamException {
+        XMLStreamReader in = factory.createXMLStreamReader(input);
+        try {
+            read(in, consumer);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the transition system from {@code input} directly into a
+     * {@link CompactTransitionSystem}, without building a
+     * {@link TransitionSystem} first. States and actions must be declared
+     * before they are referred to, as {@link StAXTransitionSystemXmlFormat}
+     * writes them.
+     */
+    public CompactTransitionSystem<String, String, String> readCompact(Reader input) throws XMLStreamException {
+        CompactTransitionSystem.Builder<String, String, String> builder = new CompactTransitionSystem.Builder<>();
+        XMLStreamReader in = factory.createXMLStreamReader(input);
+        try {
+            read(in, new TransitionSystemXmlConsumer() {
+                @Override
+                public void name(String name) {
+                    builder.setName(name);
+                }
+
+                @Override
+                public void state(String state) {
+                    builder.addState(state);
+                }
+
+                @Override
+                public void action(String action) {
+                    builder.addAction(action);
+                }
+
+                @Override
+                public void atomicProposition(String ap) {
+                    builder.addAtomicProposition(ap);
+                }
+
+                @Override
+                public void initialState(String state) {
+                    builder.addInitialState(stateId(in, builder, state, TransitionSystemPart.INITIAL_STATES));
+                }
+
+                @Override
+                public void label(String state, String ap) {
+                    builder.addToLabel(stateId(in, builder, state, TransitionSystemPart.LABELING_FUNCTION),
+                            builder.addAtomicProposition(ap));
+                }
+
+                @Override
+                public void transition(String from, String action, String to) {
+                    int actionId = builder.getActionId(action);
+                    if (actionId < 0) {
+                        throw new InvalidXmlException(loc(in) + " unknown action " + action,
+                                TransitionSystemPart.TRANSITIONS);
+                    }
+                    builder.addTransition(stateId(in, builder, from, TransitionSystemPart.TRANSITIONS), actionId,
+                            stateId(in, builder, to, TransitionSystemPart.TRANSITIONS));
+                }
+            });
+        } finally {
+            in.close();
+        }
+        return builder.build();
+    }
+
+    private void read(XMLStreamReader in, TransitionSystemXmlConsumer consumer) throws XMLStreamException {
+        Map<String, String> apNames = new HashMap<>();
+        String labeledState = null;
+
+        while (in.hasNext()) {
+            int event = in.next();
+            if (event == XMLStreamConstants.END_ELEMENT && kEntry.equals(in.getLocalName())) {
+                labeledState = null;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (in.getLocalName()) {
+                case kName:
+                    consumer.name(in.getElementText().trim());
+                    break;
+
+                case kState:
+                    consumer.state(require(in, attSId, TransitionSystemPart.STATES));
+                    break;
+
+                case kAction:
+                    consumer.action(require(in, attAId, TransitionSystemPart.ACTIONS));
+                    break;
+
+                case kAtomicProposition:
+                    String apId = require(in, attApId, TransitionSystemPart.ATOMIC_PROPOSITIONS);
+                    String ap = in.getElementText().trim();
+                    apNames.put(apId, ap);
+                    consumer.atomicProposition(ap);
+                    break;
+
+                case kInitialState:
+                    consumer.initialState(require(in, attState, TransitionSystemPart.INITIAL_STATES));
+                    break;
+
+                case kEntry:
+                    labeledState = require(in, attState, TransitionSystemPart.LABELING_FUNCTION);
+                    break;
+
+                case kLabel:
+                    if (labeledState == null) {
+                        throw new InvalidXmlException(loc(in) + " label outside of an entry",
+                                TransitionSystemPart.LABELING_FUNCTION);
+                    }
+                    String ref = require(in, attAP, TransitionSystemPart.LABELING_FUNCTION);
+                    String name = apNames.get(ref);
+                    if (name == null) {
+                        throw new InvalidXmlException(loc(in) + " unknown atomic proposition " + ref,
+                                TransitionSystemPart.LABELING_FUNCTION);
+                    }
+                    consumer.label(labeledState, name);
+                    break;
+
+                case kTransition:
+                    consumer.transition(require(in, attFrom, TransitionSystemPart.TRANSITIONS),
+                            require(in, attAction, TransitionSystemPart.TRANSITIONS),
+                            require(in, attTo, TransitionSystemPart.TRANSITIONS));
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static String require(XMLStreamReader in, String attribute, TransitionSystemPart part) {
+        String value = in.getAttributeValue(null, attribute);
+        if (value == null) {
+            throw new InvalidXmlException(loc(in) + " missing " + attribute + " attribute", part);
+        }
+        return value;
+    }
+
+    private static int stateId(XMLStreamReader in, CompactTransitionSystem.Builder<String, ?, ?> builder, String state,
+            TransitionSystemPart part) {
+        int id = builder.getStateId(state);
+        if (id < 0) {
+            throw new InvalidXmlException(loc(in) + " unknown state " + state, part);
+        }
+        return id;
+    }
+
+    private static String loc(XMLStreamReader in) {
+        Location location = in.getLocation();
+        return "[" + location.getLineNumber() + ": " + location.getColumnNumber() + "]";
+    }
+
+}
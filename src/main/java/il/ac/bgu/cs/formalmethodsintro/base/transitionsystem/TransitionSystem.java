@@ -40,6 +40,18 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
     private final Set<ATOMIC_PROPOSITION> atomicPropositions = new HashSet<>();
     private final HashMap<STATE, Set<ATOMIC_PROPOSITION>> labelingFunction = new HashMap<>();
 
+    /**
+     * Forward adjacency index: state &rarr; action &rarr; successors. Kept in
+     * sync with {@link #transitions} by {@link #addTransition(TSTransition)}
+     * and {@link #removeTransition(TSTransition)}.
+     */
+    private final Map<STATE, Map<ACTION, Set<STATE>>> successors = new HashMap<>();
+
+    /**
+     * Backward adjacency index: state &rarr; action &rarr; predecessors.
+     */
+    private final Map<STATE, Map<ACTION, Set<STATE>>> predecessors = new HashMap<>();
+
     /**
      * Get the name of the transitions system.
      *
@@ -150,11 +162,9 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
      * @throws FVMException If the state is in use by a transition.
      */
     public void removeState(STATE state) throws FVMException {
-        transitions.stream()
-                .filter((t) -> (t.getFrom().equals(state) || t.getTo().equals(state)))
-                .findFirst().map(t -> {
-                    throw new DeletionOfAttachedStateException(state, TransitionSystemPart.TRANSITIONS);
-                });
+        if (successors.containsKey(state) || predecessors.containsKey(state)) {
+            throw new DeletionOfAttachedStateException(state, TransitionSystemPart.TRANSITIONS);
+        }
 
         states.remove(state);
         initialStates.remove(state);
@@ -173,7 +183,10 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
         addState(t.getTo());
         addAction(t.getAction());
 
-        transitions.add(t);
+        if (transitions.add(t)) {
+            index(successors, t.getFrom(), t.getAction(), t.getTo());
+            index(predecessors, t.getTo(), t.getAction(), t.getFrom());
+        }
     }
 
     /**
@@ -182,7 +195,111 @@ public class TransitionSystem<STATE, ACTION, ATOMIC_PROPOSITION> {
      * @param t The transition to remove.
      */
     public void removeTransition(TSTransition<STATE, ACTION> t) {
-        transitions.remove(t);
+        if (transitions.remove(t)) {
+            unindex(successors, t.getFrom(), t.getAction(), t.getTo());
+            unindex(predecessors, t.getTo(), t.getAction(), t.getFrom());
+        }
+    }
+
+    /**
+     * Returns the states reachable from {@code s} by a single transition. Runs
+     * in time proportional to the out-degree of {@code s}.
+     *
+     * @param s A state.
+     * @return A new set holding the successors of {@code s}. Empty if
+     * {@code s} has no outgoing transitions.
+     */
+    public Set<STATE> getSuccessors(STATE s) {
+        return union(successors.get(s));
+    }
+
+    /**
+     * Returns the states reachable from {@code s} by a single transition
+     * labeled {@code a}.
+     *
+     * @param s A state.
+     * @param a An action.
+     * @return The {@code a}-successors of {@code s}. The returned set is
+     * unmodifiable.
+     */
+    public Set<STATE> getSuccessors(STATE s, ACTION a) {
+        return lookup(successors, s, a);
+    }
+
+    /**
+     * Returns the outgoing transitions of {@code s}, indexed by action.
+     *
+     * @param s A state.
+     * @return An unmodifiable map from actions to the {@code s}'s successors
+     * under that action. The successor sets are unmodifiable views of the
+     * index, so neither can be used to change {@code this}.
+     */
+    public Map<ACTION, Set<STATE>> getOutgoing(STATE s) {
+        Map<ACTION, Set<STATE>> byAction = successors.get(s);
+        if (byAction == null) {
+            return Collections.emptyMap();
+        }
+        Map<ACTION, Set<STATE>> outgoing = new HashMap<>(byAction.size() * 4 / 3 + 1);
+        byAction.forEach((a, targets) -> outgoing.put(a, Collections.unmodifiableSet(targets)));
+        return Collections.unmodifiableMap(outgoing);
+    }
+
+    /**
+     * Returns the states from which {@code s} is reachable by a single
+     * transition. Runs in time proportional to the in-degree of {@code s}.
+     *
+     * @param s A state.
+     * @return A new set holding the predecessors of {@code s}.
+     */
+    public Set<STATE> getPredecessors(STATE s) {
+        return union(predecessors.get(s));
+    }
+
+    /**
+     * Returns the states from which {@code s} is reachable by a single
+     * transition labeled {@code a}.
+     *
+     * @param s A state.
+     * @param a An action.
+     * @return The {@code a}-predecessors of {@code s}. The returned set is
+     * unmodifiable.
+     */
+    public Set<STATE> getPredecessors(STATE s, ACTION a) {
+        return lookup(predecessors, s, a);
+    }
+
+    private static <S, A> void index(Map<S, Map<A, Set<S>>> idx, S key, A action, S value) {
+        idx.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(action, k -> new HashSet<>())
+                .add(value);
+    }
+
+    private static <S, A> void unindex(Map<S, Map<A, Set<S>>> idx, S key, A action, S value) {
+        Map<A, Set<S>> byAction = idx.get(key);
+        Set<S> values = byAction.get(action);
+        values.remove(value);
+        if (values.isEmpty()) {
+            byAction.remove(action);
+            if (byAction.isEmpty()) {
+                idx.remove(key);
+            }
+        }
+    }
+
+    private static <S, A> Set<S> lookup(Map<S, Map<A, Set<S>>> idx, S key, A action) {
+        Map<A, Set<S>> byAction = idx.get(key);
+        if (byAction == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(byAction.getOrDefault(action, Collections.emptySet()));
+    }
+
+    private static <S, A> Set<S> union(Map<A, Set<S>> byAction) {
+        Set<S> result = new HashSet<>();
+        if (byAction != null) {
+            byAction.values().forEach(result::addAll);
+        }
+        return result;
     }
 
     /**
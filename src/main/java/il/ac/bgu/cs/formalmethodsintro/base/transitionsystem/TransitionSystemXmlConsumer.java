@@ -0,0 +1,36 @@
+package il.ac.bgu.cs.formalmethodsintro.base.transitionsystem;
+
+/**
+ * Receives the parts of a transition system as they are read from XML by
+ * {@link StAXTransitionSystemXmlReader}, in document order. Every method
+ * does nothing by default, so consumers only implement the events they need.
+ */
+public interface TransitionSystemXmlConsumer {
+
+    default void name(String name) {
+    }
+
+    default void state(String state) {
+    }
+
+    default void action(String action) {
+    }
+
+    default void atomicProposition(String ap) {
+    }
+
+    default void initialState(String state) {
+    }
+
+    /**
+     * @param state A state.
+     * @param ap An atomic proposition, by name, in the label of
+     * {@code state}.
+     */
+    default void label(String state, String ap) {
+    }
+
+    default void transition(String from, String action, String to) {
+    }
+
+}
@@ -3,12 +3,19 @@ package il.ac.bgu.cs.formalmethodsintro.base.util;
 import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.joining;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -26,7 +33,6 @@ public class GraphvizPainter<S, A, P> {
     private final Function<S, String> statePainter;
     private final Function<A, String> actionPainter;
     private final Function<P, String> apPainter;
-    private final Map<S, String> idByState = new LinkedHashMap<>();
 
     /**
      * A painter that prints the transition system by calling
@@ -53,72 +59,142 @@ public class GraphvizPainter<S, A, P> {
         this.apPainter = apPainter;
     }
 
+    /**
+     * @param ts A transition system.
+     * @return The Graphviz code drawing {@code ts}.
+     * @see #writeDot(TransitionSystem, Writer)
+     */
     public String makeDotCode(TransitionSystem<S, A, P> ts) {
-        idByState.clear();
-        StringBuilder sb = new StringBuilder();
-        sb.append("digraph ts {\n");
-        sb.append("graph [label=\"")
-                .append(Optional.ofNullable(ts.getName()).orElse("<no name>"))
-                .append("\", labelloc=\"t\", fontname=\"Times-Roman\"]\n");
-
-        int idx = 1;
-        List<S> sortedStates = new ArrayList<>(ts.getStates());
-        Collections.sort(sortedStates, (s1, s2) -> statePainter.apply(s1).compareTo(statePainter.apply(s2)));
-        for (S s : sortedStates) {
-            String id = "s" + (idx++);
-            idByState.put(s, id);
+        StringWriter out = new StringWriter();
+        try {
+            writeDot(ts, out);
+        } catch (IOException e) {
+            // A StringWriter does not throw.
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the Graphviz code drawing {@code ts} to {@code out}, as it is
+     * generated. Each state is painted once. {@code out} is neither buffered
+     * nor closed here.
+     *
+     * @param ts A transition system.
+     * @param out Where the code is written.
+     * @throws IOException if writing to {@code out} fails.
+     */
+    public void writeDot(TransitionSystem<S, A, P> ts, Writer out) throws IOException {
+        write(ts, ts.getStates(), out);
+    }
+
+    /**
+     * Writes the Graphviz code drawing the part of {@code ts} within
+     * {@code depth} transitions of {@code from}: those states, the
+     * transitions between them, and their labels.
+     *
+     * @param ts A transition system.
+     * @param from The states to start from, e.g. the initial ones.
+     * @param depth How many transitions to follow; {@code 0} draws
+     * {@code from} alone.
+     * @param out Where the code is written.
+     * @throws IOException if writing to {@code out} fails.
+     */
+    public void writeDot(TransitionSystem<S, A, P> ts, Collection<S> from, int depth, Writer out) throws IOException {
+        Set<S> reached = new LinkedHashSet<>(from);
+        List<S> frontier = new ArrayList<>(reached);
+        for (int d = 0; d < depth && !frontier.isEmpty(); d++) {
+            List<S> next = new ArrayList<>();
+            for (S s : frontier) {
+                for (S t : ts.getSuccessors(s)) {
+                    if (reached.add(t)) {
+                        next.add(t);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        write(ts, reached, out);
+    }
+
+    private void write(TransitionSystem<S, A, P> ts, Collection<S> states, Writer out) throws IOException {
+        out.write("digraph ts {\n");
+        out.write("graph [label=\"" + Optional.ofNullable(ts.getName()).orElse("<no name>")
+                + "\", labelloc=\"t\", fontname=\"Times-Roman\"]\n");
+
+        // Paint each state once, and number the states in the order of their
+        // painted strings. The ids live in this call only, so painters can be
+        // shared between threads.
+        List<S> sorted = new ArrayList<>(states);
+        String[] painted = new String[sorted.size()];
+        Integer[] order = new Integer[sorted.size()];
+        for (int i = 0; i < painted.length; i++) {
+            painted[i] = statePainter.apply(sorted.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> painted[i].compareTo(painted[j]));
+        Map<S, String> idByState = new HashMap<>(painted.length * 4 / 3 + 1);
+        for (int idx = 0; idx < order.length; idx++) {
+            idByState.put(sorted.get(order[idx]), "s" + (idx + 1));
         }
 
-        drawNodes(ts, sb);
-        drawTransitions(ts, sb);
-        drawAtomicPropositions(ts, sb);
+        drawNodes(ts, sorted, painted, order, idByState, out);
+        drawTransitions(ts, sorted, order, idByState, out);
+        drawAtomicPropositions(ts, sorted, order, idByState, out);
 
-        sb.append("}");
-        return sb.toString();
+        out.write("}");
     }
 
-    private void drawNodes(TransitionSystem<S, A, P> ts, StringBuilder sb) {
-        sb.append("node [shape=box, fontname=\"Courier\"];\n");
-        idByState.forEach((s, id) -> {
-            sb.append(id).append("[label=\"")
-                    .append(statePainter.apply(s).replace("\"", "\\\"\\"))
-                    .append("\"];\n");
+    private void drawNodes(TransitionSystem<S, A, P> ts, List<S> states, String[] painted, Integer[] order,
+            Map<S, String> idByState, Writer out) throws IOException {
+        out.write("node [shape=box, fontname=\"Courier\"];\n");
+        for (int i : order) {
+            S s = states.get(i);
+            String id = idByState.get(s);
+            out.write(id + "[label=\"" + painted[i].replace("\"", "\\\"\\") + "\"];\n");
             if (ts.getInitialStates().contains(s)) {
                 String startId = "start_" + id;
-                sb.append(startId).append("[label=\"\", shape=none];\n");
-                sb.append(startId).append("->").append(id).append(";\n");
-                sb.append("{rank=source; ").append(id).append("; start_").append(id).append("}\n");
+                out.write(startId + "[label=\"\", shape=none];\n");
+                out.write(startId + "->" + id + ";\n");
+                out.write("{rank=source; " + id + "; start_" + id + "}\n");
             }
-        });
+        }
     }
 
-    private void drawTransitions(TransitionSystem<S, A, P> ts, StringBuilder sb) {
-        sb.append("edge [fontname=\"Courier\"]\n");
-        ts.getTransitions().forEach(t
-                -> sb.append(idByState.get(t.getFrom()))
-                        .append(" -> ")
-                        .append(idByState.get(t.getTo()))
-                        .append(" [label=\"")
-                        .append(actionPainter.apply(t.getAction()).replace("\"", "\\\"\\"))
-                        .append("\"];\n")
-        );
+    private void drawTransitions(TransitionSystem<S, A, P> ts, List<S> states, Integer[] order,
+            Map<S, String> idByState, Writer out) throws IOException {
+        out.write("edge [fontname=\"Courier\"]\n");
+        for (int i : order) {
+            String from = idByState.get(states.get(i));
+            for (Map.Entry<A, Set<S>> outgoing : ts.getOutgoing(states.get(i)).entrySet()) {
+                String label = actionPainter.apply(outgoing.getKey()).replace("\"", "\\\"\\");
+                for (S t : outgoing.getValue()) {
+                    String to = idByState.get(t);
+                    if (to != null) {
+                        out.write(from + " -> " + to + " [label=\"" + label + "\"];\n");
+                    }
+                }
+            }
+        }
     }
 
-    private void drawAtomicPropositions(TransitionSystem<S, A, P> ts, StringBuilder sb) {
-        sb.append("node [color=\"#008800\", fontcolor=\"#008800\", shape=note]\n");
-        sb.append("edge [color=\"#008800\", arrowhead=none, arrowtail=none, style=dotted]\n");
-
-        ts.getStates().stream()
-                .filter(s -> !ts.getLabelingFunction().getOrDefault(s, emptySet()).isEmpty())
-                .forEach(s -> {
-                    // make AP node
-                    String apNodeId = "ap_" + idByState.get(s);
-                    String title = ts.getLabelingFunction().get(s).stream().map(apPainter::apply)
-                            .collect(Collectors.joining("\\n"));
-                    sb.append(apNodeId).append(" [label=\"").append(title).append("\"];\n");
-                    // connect AP node to s
-                    sb.append(apNodeId).append("->").append(idByState.get(s)).append(";\n");
-                });
+    private void drawAtomicPropositions(TransitionSystem<S, A, P> ts, List<S> states, Integer[] order,
+            Map<S, String> idByState, Writer out) throws IOException {
+        out.write("node [color=\"#008800\", fontcolor=\"#008800\", shape=note]\n");
+        out.write("edge [color=\"#008800\", arrowhead=none, arrowtail=none, style=dotted]\n");
+
+        for (int i : order) {
+            S s = states.get(i);
+            Set<P> label = ts.getLabelingFunction().getOrDefault(s, emptySet());
+            if (!label.isEmpty()) {
+                // make AP node
+                String apNodeId = "ap_" + idByState.get(s);
+                String title = label.stream().map(apPainter::apply).collect(Collectors.joining("\\n"));
+                out.write(apNodeId + " [label=\"" + title + "\"];\n");
+                // connect AP node to s
+                out.write(apNodeId + "->" + idByState.get(s) + ";\n");
+            }
+        }
     }
 
     private static String mapValues(Map<String, Boolean> mp) {
@@ -0,0 +1,79 @@
+package il.ac.bgu.cs.formalmethodsintro.base.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive {@code int}s. Used where a
+ * {@code List<Integer>} would box every element.
+ */
+public class IntArrayList {
+
+    private int[] items;
+    private int size;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        items = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+        }
+        items[size++] = value;
+    }
+
+    public int get(int idx) {
+        if (idx >= size) {
+            throw new IndexOutOfBoundsException("Index " + idx + " out of " + size);
+        }
+        return items[idx];
+    }
+
+    public void set(int idx, int value) {
+        if (idx >= size) {
+            throw new IndexOutOfBoundsException("Index " + idx + " out of " + size);
+        }
+        items[idx] = value;
+    }
+
+    /**
+     * Removes and returns the last element.
+     *
+     * @return The former last element.
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        return items[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return A trimmed copy of the elements.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+}
@@ -0,0 +1,102 @@
+package il.ac.bgu.cs.formalmethodsintro.base.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache that evicts the least-recently-used entry when
+ * full. Counts hits and misses, so callers can tell whether caching pays off.
+ *
+ * Values are computed outside the cache lock, so two threads missing on the
+ * same key at the same time may both compute it; the first value stored wins.
+ * The loader must therefore be free of side effects.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final Map<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for {@code key}, computing and caching it
+     * using {@code loader} if there is none.
+     *
+     * @param key The key to look up.
+     * @param loader Computes the value for a missing key. Must not return
+     * {@code null}.
+     * @return The value for {@code key}.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+            return value;
+        }
+
+        misses.incrementAndGet();
+        V computed = loader.apply(key);
+        synchronized (entries) {
+            V existing = entries.putIfAbsent(key, computed);
+            return (existing != null) ? existing : computed;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all entries and resets the statistics.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[LruCache size=" + size() + "/" + capacity + " hits=" + hits.get() + " misses=" + misses.get() + "]";
+    }
+
+}
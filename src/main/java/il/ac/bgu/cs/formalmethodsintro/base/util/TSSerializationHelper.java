@@ -18,4 +18,27 @@ public interface TSSerializationHelper<S, A, P> {
 
     String serializeAtomicProposition(P ap);
 
+    /**
+     * @return A helper for systems whose parts are strings, naming each part
+     * by itself.
+     */
+    static TSSerializationHelper<String, String, String> identity() {
+        return new TSSerializationHelper<String, String, String>() {
+            @Override
+            public String serializeState(String s) {
+                return s;
+            }
+
+            @Override
+            public String serializeAction(String a) {
+                return a;
+            }
+
+            @Override
+            public String serializeAtomicProposition(String ap) {
+                return ap;
+            }
+        };
+    }
+
 }
@@ -33,6 +33,25 @@ public class Util {
         return stream.collect(Collectors.toSet());
     }
 
+    /**
+     * Conjoins two program graph conditions. An empty condition always holds,
+     * so it is dropped.
+     *
+     * @param cond1 A condition.
+     * @param cond2 A condition.
+     * @return A condition that holds iff both {@code cond1} and {@code cond2}
+     * hold.
+     */
+    public static String mergeConditions(String cond1, String cond2) {
+        if (cond1.isEmpty()) {
+            return cond2;
+        }
+        if (cond2.isEmpty()) {
+            return cond1;
+        }
+        return "(" + cond1 + ") && (" + cond2 + ")";
+    }
+
     /**
      * @param gnba
      */
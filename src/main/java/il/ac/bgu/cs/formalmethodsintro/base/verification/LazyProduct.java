@@ -0,0 +1,198 @@
+package il.ac.bgu.cs.formalmethodsintro.base.verification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SymbolicAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * The product of a transition system and an automaton over its labels,
+ * explored on demand. The product has a state {@code <s,q>} for each state
+ * {@code s} of the transition system and state {@code q} of the automaton:
+ * <ul>
+ * <li>{@code <s0,q>} is initial iff {@code s0} is initial and {@code q} is
+ * reachable from an initial automaton state by reading the label of
+ * {@code s0}.</li>
+ * <li>{@code <s,q> -a-> <t,p>} iff {@code s -a-> t} and {@code p} is reachable
+ * from {@code q} by reading the label of {@code t}.</li>
+ * </ul>
+ * Successors are computed when asked for; nothing is stored, so checkers can
+ * stop as soon as they have an answer. Instances only read the transition
+ * system and the automaton, and can be used by several threads at once, as
+ * long as neither is changed.
+ *
+ * @param <S> Type of states in the transition system.
+ * @param <A> Type of actions in the transition system.
+ * @param <P> Type of atomic propositions, which is also the automaton
+ * alphabet.
+ * @param <Q> Type of states in the automaton.
+ */
+public class LazyProduct<S, A, P, Q> {
+
+    /**
+     * Receives the transitions leaving a product state.
+     */
+    @FunctionalInterface
+    public interface TransitionConsumer<S, A, Q> {
+
+        void accept(A action, Pair<S, Q> to);
+    }
+
+    /**
+     * The transition function of the automaton.
+     */
+    @FunctionalInterface
+    private interface Step<Q, P> {
+
+        /**
+         * @return The successors of each automaton state on reading
+         * {@code label}. Any encoding of {@code label} is done here, once,
+         * rather than for each state.
+         */
+        Function<Q, Set<Q>> reading(Set<P> label);
+    }
+
+    private final TransitionSystem<S, A, P> ts;
+    private final Set<Q> autInitialStates;
+    private final Step<Q, P> step;
+    private final List<Set<Q>> acceptingByColor = new ArrayList<>();
+
+    public LazyProduct(TransitionSystem<S, A, P> ts, MultiColorAutomaton<Q, P> aut) {
+        this(ts, aut.getInitialStates(), label -> q -> {
+            Map<Set<P>, Set<Q>> out = aut.getTransitions().get(q);
+            Set<Q> result = (out == null) ? null : out.get(label);
+            return (result == null) ? Collections.emptySet() : result;
+        });
+        // Read the accepting sets once: getAcceptingStates(int) adds a color
+        // when it is missing, so it must not be called while exploring.
+        for (int color : new ArrayList<>(aut.getColors())) {
+            addColor(aut.getAcceptingStates(color));
+        }
+    }
+
+    /**
+     * A product with an automaton whose transitions are guarded by cubes.
+     * Each label of the transition system is encoded as a bit mask once per
+     * step and tested against the guards; propositions the automaton does not
+     * mention are ignored.
+     */
+    public LazyProduct(TransitionSystem<S, A, P> ts, SymbolicAutomaton<Q, P> aut) {
+        this(ts, aut.getInitialStates(), label -> {
+            long letter = aut.encode(label);
+            return q -> aut.nextStates(q, letter);
+        });
+        for (int color : new ArrayList<>(aut.getColors())) {
+            addColor(aut.getAcceptingStates(color));
+        }
+    }
+
+    private LazyProduct(TransitionSystem<S, A, P> ts, Set<Q> autInitialStates, Step<Q, P> step) {
+        this.ts = ts;
+        this.autInitialStates = autInitialStates;
+        this.step = step;
+    }
+
+    private void addColor(Set<Q> accepting) {
+        if (acceptingByColor.size() == Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " acceptance colors are supported");
+        }
+        acceptingByColor.add(accepting);
+    }
+
+    public TransitionSystem<S, A, P> getTransitionSystem() {
+        return ts;
+    }
+
+    /**
+     * @return The initial product states, in a fixed order.
+     */
+    public List<Pair<S, Q>> getInitialStates() {
+        List<Pair<S, Q>> result = new ArrayList<>();
+        for (S s0 : ts.getInitialStates()) {
+            Function<Q, Set<Q>> next = step.reading(ts.getLabel(s0));
+            for (Q q0 : autInitialStates) {
+                for (Q q : next.apply(q0)) {
+                    Pair<S, Q> state = new Pair<>(s0, q);
+                    if (!result.contains(state)) {
+                        result.add(state);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes each transition leaving {@code state} to {@code consumer}.
+     */
+    public void forEachTransition(Pair<S, Q> state, TransitionConsumer<S, A, Q> consumer) {
+        for (Map.Entry<A, Set<S>> outgoing : ts.getOutgoing(state.first).entrySet()) {
+            for (S t : outgoing.getValue()) {
+                for (Q p : step.reading(ts.getLabel(t)).apply(state.second)) {
+                    consumer.accept(outgoing.getKey(), new Pair<>(t, p));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The successors of {@code state}, without duplicates.
+     */
+    public List<Pair<S, Q>> getSuccessors(Pair<S, Q> state) {
+        List<Pair<S, Q>> result = new ArrayList<>();
+        Map<A, Set<S>> outgoing = ts.getOutgoing(state.first);
+        for (Set<S> targets : outgoing.values()) {
+            for (S t : targets) {
+                for (Q p : step.reading(ts.getLabel(t)).apply(state.second)) {
+                    result.add(new Pair<>(t, p));
+                }
+            }
+        }
+        // Successors under different actions may coincide.
+        return (outgoing.size() <= 1) ? result : new ArrayList<>(new LinkedHashSet<>(result));
+    }
+
+    /**
+     * @return The number of acceptance colors of the automaton.
+     */
+    public int getColorCount() {
+        return acceptingByColor.size();
+    }
+
+    /**
+     * @param state A product state.
+     * @return A bit mask with bit {@code i} set iff the automaton component of
+     * {@code state} is in the {@code i}-th color of the automaton.
+     */
+    public long getColorMask(Pair<S, Q> state) {
+        long mask = 0;
+        for (int i = 0; i < acceptingByColor.size(); i++) {
+            if (acceptingByColor.get(i).contains(state.second)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return {@code true} iff the automaton component of {@code state} is
+     * accepting in some color.
+     */
+    public boolean isAccepting(Pair<S, Q> state) {
+        for (Set<Q> accepting : acceptingByColor) {
+            if (accepting.contains(state.second)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
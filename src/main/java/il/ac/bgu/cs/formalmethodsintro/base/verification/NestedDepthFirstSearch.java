@@ -0,0 +1,181 @@
+package il.ac.bgu.cs.formalmethodsintro.base.verification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Checks whether a product of a transition system and a Büchi automaton has a
+ * reachable cycle through an accepting state, using nested depth-first search.
+ *
+ * The outer search explores the product depth first. When it backtracks from
+ * an accepting state, an inner search looks for a path from that state back
+ * to itself; states seen by earlier inner searches are not explored again.
+ * Both searches keep explicit stacks, and the check stops at the first cycle
+ * it finds, so only the part of the product needed to find it is generated.
+ *
+ * @param <S> Type of states in the transition system.
+ * @param <Q> Type of states in the automaton.
+ */
+public class NestedDepthFirstSearch<S, Q> {
+
+    private final LazyProduct<S, ?, ?, Q> product;
+    private Random random;
+    private AtomicBoolean cancelled = new AtomicBoolean();
+
+    public NestedDepthFirstSearch(LazyProduct<S, ?, ?, Q> product) {
+        this.product = product;
+    }
+
+    /**
+     * Visits the initial states, and the successors of each state, in a
+     * random order drawn from {@code random}, instead of the product's order.
+     *
+     * @return {@code this}.
+     */
+    NestedDepthFirstSearch<S, Q> shuffle(Random random) {
+        this.random = random;
+        return this;
+    }
+
+    /**
+     * Makes {@link #run()} give up, returning {@code null}, once
+     * {@code cancelled} is set.
+     *
+     * @return {@code this}.
+     */
+    NestedDepthFirstSearch<S, Q> cancelWhen(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+        return this;
+    }
+
+    /**
+     * @return A {@link VerificationSucceeded} if no accepting cycle is
+     * reachable. Otherwise, a {@link VerificationFailed} whose prefix leads
+     * from an initial state to the cycle, and whose cycle is repeated forever.
+     * {@code null} if the search was cancelled.
+     */
+    public VerificationResult<S> run() {
+        Set<Pair<S, Q>> outerVisited = new HashSet<>();
+        Set<Pair<S, Q>> innerVisited = new HashSet<>();
+        Deque<Frame<S, Q>> outer = new ArrayDeque<>();
+
+        List<Pair<S, Q>> initialStates = product.getInitialStates();
+        if (random != null) {
+            Collections.shuffle(initialStates, random);
+        }
+        for (Pair<S, Q> initial : initialStates) {
+            if (!outerVisited.add(initial)) {
+                continue;
+            }
+            outer.push(new Frame<>(initial, successors(initial)));
+            while (!outer.isEmpty()) {
+                if (cancelled.get()) {
+                    return null;
+                }
+                Frame<S, Q> top = outer.peek();
+                if (top.successors.hasNext()) {
+                    Pair<S, Q> next = top.successors.next();
+                    if (outerVisited.add(next)) {
+                        outer.push(new Frame<>(next, successors(next)));
+                    }
+                } else {
+                    outer.pop();
+                    if (product.isAccepting(top.state)) {
+                        List<Pair<S, Q>> cycle = findCycle(top.state, innerVisited);
+                        if (cancelled.get()) {
+                            return null;
+                        }
+                        if (cycle != null) {
+                            return counterexample(outer, cycle);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new VerificationSucceeded<>();
+    }
+
+    /**
+     * @return A path from {@code seed} to a predecessor of {@code seed}, or
+     * {@code null} if there is none through states outside
+     * {@code innerVisited}.
+     */
+    private List<Pair<S, Q>> findCycle(Pair<S, Q> seed, Set<Pair<S, Q>> innerVisited) {
+        Deque<Frame<S, Q>> inner = new ArrayDeque<>();
+        innerVisited.add(seed);
+        inner.push(new Frame<>(seed, successors(seed)));
+        while (!inner.isEmpty() && !cancelled.get()) {
+            Frame<S, Q> top = inner.peek();
+            if (top.successors.hasNext()) {
+                Pair<S, Q> next = top.successors.next();
+                if (next.equals(seed)) {
+                    return pathOf(inner);
+                }
+                if (innerVisited.add(next)) {
+                    inner.push(new Frame<>(next, successors(next)));
+                }
+            } else {
+                inner.pop();
+            }
+        }
+        return null;
+    }
+
+    private List<Pair<S, Q>> successors(Pair<S, Q> state) {
+        List<Pair<S, Q>> successors = product.getSuccessors(state);
+        if (random != null) {
+            Collections.shuffle(successors, random);
+        }
+        return successors;
+    }
+
+    private VerificationFailed<S> counterexample(Deque<Frame<S, Q>> prefix, List<Pair<S, Q>> cycle) {
+        VerificationFailed<S> result = new VerificationFailed<>();
+        result.setPrefix(systemStates(pathOf(prefix)));
+        result.setCycle(systemStates(cycle));
+        return result;
+    }
+
+    /**
+     * @return The states of a search stack, from the bottom up.
+     */
+    private static <S, Q> List<Pair<S, Q>> pathOf(Deque<Frame<S, Q>> stack) {
+        List<Pair<S, Q>> path = new ArrayList<>(stack.size());
+        Iterator<Frame<S, Q>> it = stack.descendingIterator();
+        while (it.hasNext()) {
+            path.add(it.next().state);
+        }
+        return path;
+    }
+
+    static <S, Q> List<S> systemStates(List<Pair<S, Q>> path) {
+        List<S> states = new ArrayList<>(path.size());
+        for (Pair<S, Q> state : path) {
+            states.add(state.first);
+        }
+        return states;
+    }
+
+    private static final class Frame<S, Q> {
+
+        final Pair<S, Q> state;
+        final Iterator<Pair<S, Q>> successors;
+
+        Frame(Pair<S, Q> state, List<Pair<S, Q>> successors) {
+            this.state = state;
+            this.successors = successors.iterator();
+        }
+    }
+
+}
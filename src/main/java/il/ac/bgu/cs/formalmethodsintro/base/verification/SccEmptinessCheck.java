@@ -0,0 +1,222 @@
+package il.ac.bgu.cs.formalmethodsintro.base.verification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+
+/**
+ * Checks whether a product of a transition system and a generalized Büchi
+ * automaton has a reachable cycle that visits every acceptance color, without
+ * degeneralizing the automaton first.
+ *
+ * This is Couvreur's on-the-fly SCC algorithm. A depth-first search numbers
+ * the states it visits, and keeps a stack of the roots of the strongly
+ * connected components that are not completed yet, each with the colors seen
+ * in its component. An edge back into an incomplete component merges all the
+ * components above it into one; if the merged component has all the colors, a
+ * counterexample exists. Components are removed once the search backtracks
+ * past their root. The search keeps explicit stacks, and stops as soon as a
+ * component has all the colors.
+ *
+ * An automaton without colors accepts every infinite run, so any reachable
+ * cycle is then a counterexample.
+ *
+ * @param <S> Type of states in the transition system.
+ * @param <Q> Type of states in the automaton.
+ */
+public class SccEmptinessCheck<S, Q> {
+
+    /**
+     * Marks states whose component was completed and found empty.
+     */
+    private static final int REMOVED = 0;
+
+    private final LazyProduct<S, ?, ?, Q> product;
+    private final long allColors;
+
+    public SccEmptinessCheck(LazyProduct<S, ?, ?, Q> product) {
+        this.product = product;
+        int colors = product.getColorCount();
+        allColors = (colors == Long.SIZE) ? -1L : (1L << colors) - 1;
+    }
+
+    /**
+     * @return A {@link VerificationSucceeded} if no reachable cycle visits
+     * every color. Otherwise, a {@link VerificationFailed} whose prefix leads
+     * from an initial state to the cycle, and whose cycle visits every color.
+     */
+    public VerificationResult<S> run() {
+        // DFS number of each visited state, or REMOVED.
+        Map<Pair<S, Q>, Integer> number = new HashMap<>();
+        // Visited states whose component is not completed, in DFS order.
+        List<Pair<S, Q>> live = new ArrayList<>();
+        Deque<Root> roots = new ArrayDeque<>();
+        Deque<Frame<S, Q>> dfs = new ArrayDeque<>();
+        int counter = REMOVED;
+
+        for (Pair<S, Q> initial : product.getInitialStates()) {
+            if (number.containsKey(initial)) {
+                continue;
+            }
+            push(initial, ++counter, number, live, roots, dfs);
+            while (!dfs.isEmpty()) {
+                Frame<S, Q> top = dfs.peek();
+                if (top.successors.hasNext()) {
+                    Pair<S, Q> next = top.successors.next();
+                    Integer n = number.get(next);
+                    if (n == null) {
+                        push(next, ++counter, number, live, roots, dfs);
+                    } else if (n != REMOVED) {
+                        // next is in an incomplete component, which is now
+                        // known to reach the current state: merge.
+                        long colors = 0;
+                        while (roots.peek().number > n) {
+                            colors |= roots.pop().colors;
+                        }
+                        Root root = roots.peek();
+                        root.colors |= colors;
+                        if (root.colors == allColors) {
+                            return counterexample(dfs, live, number, root.number);
+                        }
+                    }
+                } else {
+                    dfs.pop();
+                    int n = number.get(top.state);
+                    if (roots.peek().number == n) {
+                        roots.pop();
+                        // Remove the completed component.
+                        Pair<S, Q> removed;
+                        do {
+                            removed = live.remove(live.size() - 1);
+                            number.put(removed, REMOVED);
+                        } while (!removed.equals(top.state));
+                    }
+                }
+            }
+        }
+
+        return new VerificationSucceeded<>();
+    }
+
+    private void push(Pair<S, Q> state, int n, Map<Pair<S, Q>, Integer> number, List<Pair<S, Q>> live,
+            Deque<Root> roots, Deque<Frame<S, Q>> dfs) {
+        number.put(state, n);
+        live.add(state);
+        roots.push(new Root(n, product.getColorMask(state)));
+        dfs.push(new Frame<>(state, product.getSuccessors(state)));
+    }
+
+    /**
+     * Builds a lasso through the component whose root has number
+     * {@code rootNumber}. Its states are the live states numbered from
+     * {@code rootNumber} on, and its root is on the DFS stack.
+     */
+    private VerificationFailed<S> counterexample(Deque<Frame<S, Q>> dfs, List<Pair<S, Q>> live,
+            Map<Pair<S, Q>, Integer> number, int rootNumber) {
+        List<Pair<S, Q>> prefix = new ArrayList<>();
+        Pair<S, Q> root = null;
+        Iterator<Frame<S, Q>> it = dfs.descendingIterator();
+        while (root == null) {
+            Pair<S, Q> state = it.next().state;
+            if (number.get(state) == rootNumber) {
+                root = state;
+            } else {
+                prefix.add(state);
+            }
+        }
+
+        Set<Pair<S, Q>> component = new HashSet<>();
+        for (int i = live.size() - 1; i >= 0 && number.get(live.get(i)) >= rootNumber; i--) {
+            component.add(live.get(i));
+        }
+
+        // From the root, go to the nearest state of each missing color, and
+        // then back to the root.
+        List<Pair<S, Q>> cycle = new ArrayList<>();
+        cycle.add(root);
+        Pair<S, Q> current = root;
+        long covered = product.getColorMask(root);
+        for (int color = 0; color < product.getColorCount(); color++) {
+            long bit = 1L << color;
+            if ((covered & bit) == 0) {
+                List<Pair<S, Q>> path = shortestPath(current, s -> (product.getColorMask(s) & bit) != 0, component);
+                for (Pair<S, Q> s : path) {
+                    covered |= product.getColorMask(s);
+                }
+                cycle.addAll(path);
+                current = path.get(path.size() - 1);
+            }
+        }
+        Pair<S, Q> target = root;
+        List<Pair<S, Q>> back = shortestPath(current, target::equals, component);
+        cycle.addAll(back.subList(0, back.size() - 1));
+
+        VerificationFailed<S> result = new VerificationFailed<>();
+        result.setPrefix(NestedDepthFirstSearch.systemStates(prefix));
+        result.setCycle(NestedDepthFirstSearch.systemStates(cycle));
+        return result;
+    }
+
+    /**
+     * @return The states of a shortest non-empty path inside
+     * {@code component} from {@code from} to a state satisfying {@code goal},
+     * not including {@code from}.
+     */
+    private List<Pair<S, Q>> shortestPath(Pair<S, Q> from, Predicate<Pair<S, Q>> goal, Set<Pair<S, Q>> component) {
+        Map<Pair<S, Q>, Pair<S, Q>> parent = new HashMap<>();
+        Deque<Pair<S, Q>> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            Pair<S, Q> state = queue.poll();
+            for (Pair<S, Q> next : product.getSuccessors(state)) {
+                if (!component.contains(next) || parent.containsKey(next)) {
+                    continue;
+                }
+                parent.put(next, state);
+                if (goal.test(next)) {
+                    List<Pair<S, Q>> path = new ArrayList<>();
+                    for (Pair<S, Q> s = next; !s.equals(from) || path.isEmpty(); s = parent.get(s)) {
+                        path.add(s);
+                    }
+                    Collections.reverse(path);
+                    return path;
+                }
+                queue.add(next);
+            }
+        }
+        throw new IllegalStateException("State " + from + " has no path to the goal in its component");
+    }
+
+    private static final class Root {
+
+        final int number;
+        long colors;
+
+        Root(int number, long colors) {
+            this.number = number;
+            this.colors = colors;
+        }
+    }
+
+    private static final class Frame<S, Q> {
+
+        final Pair<S, Q> state;
+        final Iterator<Pair<S, Q>> successors;
+
+        Frame(Pair<S, Q> state, List<Pair<S, Q>> successors) {
+            this.state = state;
+            this.successors = successors.iterator();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package il.ac.bgu.cs.formalmethodsintro.base.verification;
+
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs several nested depth-first searches over the same product at once,
+ * each visiting successors in a different random order ("swarm"
+ * verification). Every search is complete on its own, so the first one to
+ * finish decides the result, and the others are cancelled.
+ *
+ * Different orders find different accepting cycles first, so a counterexample
+ * is usually found sooner than by a single search. When there is none, each
+ * search explores the whole product, and the check takes about as long as a
+ * single search. The result is a {@link VerificationSucceeded} exactly when
+ * {@link NestedDepthFirstSearch} returns one, though the counterexample may
+ * differ.
+ *
+ * @param <S> Type of states in the transition system.
+ * @param <Q> Type of states in the automaton.
+ */
+public class SwarmEmptinessCheck<S, Q> {
+
+    private final LazyProduct<S, ?, ?, Q> product;
+    private final int threads;
+    private long seed = 0x5eedL;
+
+    public SwarmEmptinessCheck(LazyProduct<S, ?, ?, Q> product, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, got " + threads);
+        }
+        this.product = product;
+        this.threads = threads;
+    }
+
+    /**
+     * @param seed Seed for the search orders, to make runs repeatable.
+     * @return {@code this}.
+     */
+    public SwarmEmptinessCheck<S, Q> seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public VerificationResult<S> run() {
+        if (threads == 1) {
+            return new NestedDepthFirstSearch<>(product).run();
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "swarm-emptiness-check");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            CompletionService<VerificationResult<S>> searches = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < threads; i++) {
+                NestedDepthFirstSearch<S, Q> search = new NestedDepthFirstSearch<>(product).cancelWhen(cancelled);
+                // The first search keeps the product's order.
+                if (i > 0) {
+                    search.shuffle(new Random(seed + i));
+                }
+                searches.submit(search::run);
+            }
+            return searches.take().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking emptiness", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            cancelled.set(true);
+            pool.shutdownNow();
+        }
+    }
+
+}
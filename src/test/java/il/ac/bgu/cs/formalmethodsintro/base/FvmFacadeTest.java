@@ -10,14 +10,36 @@ import static il.ac.bgu.cs.formalmethodsintro.base.sanity.TransitionSystemTest.S
 import static org.junit.Assert.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Guard;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Lasso;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SimulationReduction;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SymbolicAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.BitCircuit;
+import il.ac.bgu.cs.formalmethodsintro.base.circuits.Circuit;
+import il.ac.bgu.cs.formalmethodsintro.base.goal.AutomatonIO;
+import il.ac.bgu.cs.formalmethodsintro.base.goal.GoalStructure;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToGnba;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ConditionDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.CompactTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.ReachabilityEngine;
 import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationFailed;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationResult;
+import il.ac.bgu.cs.formalmethodsintro.base.verification.VerificationSucceeded;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -227,6 +249,566 @@ public class FvmFacadeTest {
         assertTrue(true);
     }
 
+    @Test(timeout = 5000)
+    public void concurrentNanoPromelaCompilation() throws Exception {
+        List<String> programs = List.of(
+                "do :: x < 3 -> x := x + 1 :: y < 2 -> y := y + 1; x := 0 od",
+                "if :: a == c -> bb := 1 :: a == b -> if :: x != y -> do :: x < 3 -> x := x + 1 od fi; y := 9 fi",
+                "x := 1; do :: x < 9 -> x := x + 2 od; y := x");
+        List<ProgramGraph<String, String>> expected = new ArrayList<>();
+        for (String program : programs) {
+            expected.add(FvmFacade.get().programGraphFromNanoPromelaString(program));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ProgramGraph<String, String>>> results = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                String program = programs.get(i % programs.size());
+                results.add(pool.submit(() -> FvmFacade.get().programGraphFromNanoPromelaString(program)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i % programs.size()), results.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void parallelProgramGraphTranslationMatchesSequential() throws Exception {
+        ProgramGraph<String, String> pg = new ProgramGraph<>();
+        pg.setInitial("grid", true);
+        pg.addInitalization(List.of("x := 0", "y := 0"));
+        pg.addInitalization(List.of("x := 5", "y := 0"));
+        pg.addTransition(new PGTransition<>("grid", "x < 30", "x := x + 1", "grid"));
+        pg.addTransition(new PGTransition<>("grid", "y < 30", "y := y + 1", "grid"));
+        pg.addTransition(new PGTransition<>("grid", "x == y", "skip", "diagonal"));
+        pg.addTransition(new PGTransition<>("diagonal", "", "x := 0", "grid"));
+
+        Set<ActionDef> actionDefs = Set.of(new ParserBasedActDef());
+        Set<ConditionDef> conditionDefs = Set.of(new ParserBasedCondDef());
+        TransitionSystem<Pair<String, Map<String, Object>>, String, String> sequential
+                = FvmFacade.get().transitionSystemFromProgramGraph(pg, actionDefs, conditionDefs);
+        for (int threads : new int[]{1, 4}) {
+            TransitionSystem<Pair<String, Map<String, Object>>, String, String> parallel
+                    = FvmFacade.get().transitionSystemFromProgramGraph(pg, actionDefs, conditionDefs, threads);
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    /**
+     * s0 -> s1 -> s2 -> s1, where only s1 satisfies p.
+     */
+    private static TransitionSystem<String, String, String> lassoTs() {
+        TransitionSystem<String, String, String> lasso = new TransitionSystem<>();
+        lasso.addInitialState("s0");
+        lasso.addTransitionFrom("s0").action("a").to("s1");
+        lasso.addTransitionFrom("s1").action("a").to("s2");
+        lasso.addTransitionFrom("s2").action("a").to("s1");
+        lasso.addToLabel("s1", "p");
+        return lasso;
+    }
+
+    /**
+     * A system that stays in s1, labeled p, forever.
+     */
+    private static TransitionSystem<String, String, String> stuckTs() {
+        TransitionSystem<String, String, String> stuck = new TransitionSystem<>();
+        stuck.addInitialState("s0");
+        stuck.addTransitionFrom("s0").action("a").to("s1");
+        stuck.addTransitionFrom("s1").action("a").to("s1");
+        stuck.addToLabel("s1", "p");
+        return stuck;
+    }
+
+    /**
+     * A GNBA with two colors: p holds infinitely often, and p fails infinitely
+     * often.
+     */
+    private static MultiColorAutomaton<String, String> pAndNotPInfinitelyOften() {
+        MultiColorAutomaton<String, String> gnba = new MultiColorAutomaton<>();
+        gnba.setInitial("i");
+        gnba.setAccepting("p", 0);
+        gnba.setAccepting("np", 1);
+        for (String from : List.of("i", "p", "np")) {
+            gnba.addTransition(from, Set.of("p"), "p");
+            gnba.addTransition(from, Set.of(), "np");
+        }
+        return gnba;
+    }
+
+    /**
+     * An automaton over {p, q} for the words where {@code ap} holds infinitely
+     * often.
+     */
+    private static Automaton<String, String> infinitelyOften(String ap) {
+        Automaton<String, String> aut = new Automaton<>();
+        aut.setInitial("q0");
+        aut.setAccepting("q1");
+        for (Set<String> label : List.<Set<String>>of(Set.of(), Set.of("p"), Set.of("q"), Set.of("p", "q"))) {
+            String to = label.contains(ap) ? "q1" : "q0";
+            aut.addTransition("q0", label, to);
+            aut.addTransition("q1", label, to);
+        }
+        return aut;
+    }
+
+    @Test(timeout = 2000)
+    public void goalStructureOfAutomaton() throws Exception {
+        GoalStructure gs = AutomatonIO.toGoalStructure(infinitelyOften("p"));
+        assertEquals("FiniteStateAutomaton", gs.getType());
+        assertEquals(Set.of("p", "q"), new HashSet<>(gs.getAlphabet().getProposition()));
+        // q0 and q1, plus the added single initial state.
+        assertEquals(3, gs.getStateSet().getState().size());
+        // 8 transitions, and copies of the 4 leaving the initial state q0.
+        assertEquals(12, gs.getTransitionSet().getTransition().size());
+        assertEquals(1, gs.getAcc().getStateID().size());
+    }
+
+    @Test(timeout = 5000)
+    public void goalEquivalenceToFormula() throws Exception {
+        assertTrue(infinitelyOften("p").isEquivalentTo("G F p"));
+        assertFalse(infinitelyOften("p").isEquivalentTo("F G p"));
+        assertFalse(infinitelyOften("q").isEquivalentTo("G F p"));
+    }
+
+    @Test(timeout = 2000, expected = IllegalArgumentException.class)
+    public void goalEquivalenceRejectsBadFormula() throws Exception {
+        infinitelyOften("p").isEquivalentTo("G (p");
+    }
+
+    @Test(timeout = 2000)
+    public void goalExportNumbersStatesPerExport() throws Exception {
+        GoalStructure first = AutomatonIO.toGoalStructure(infinitelyOften("p"));
+        AutomatonIO.toGoalStructure(infinitelyOften("q"));
+        GoalStructure again = AutomatonIO.toGoalStructure(infinitelyOften("p"));
+
+        Set<Long> sids = new HashSet<>();
+        for (GoalStructure.StateSet.State state : again.getStateSet().getState()) {
+            sids.add(state.getSid());
+        }
+        assertEquals(Set.of(0L, 1L, 2L), sids);
+        assertEquals(first.getAcc().getStateID(), again.getAcc().getStateID());
+        assertEquals(first.getTransitionSet().getTransition().get(0).getLabel(),
+                again.getTransitionSet().getTransition().get(0).getLabel());
+    }
+
+    @Test(timeout = 2000)
+    public void languageInclusionAndUniversality() throws Exception {
+        List<Set<String>> alphabet = List.of(Set.of(), Set.of("p"), Set.of("q"), Set.of("p", "q"));
+
+        // Eventually p.
+        Automaton<String, String> eventually = new Automaton<>();
+        eventually.setInitial("wait");
+        eventually.setAccepting("done");
+        for (Set<String> label : alphabet) {
+            eventually.addTransition("wait", label, label.contains("p") ? "done" : "wait");
+            eventually.addTransition("done", label, "done");
+        }
+
+        assertTrue(infinitelyOften("p").isIncludedIn(eventually));
+        Lasso<String> word = eventually.inclusionCounterexample(infinitelyOften("p"));
+        assertNotNull(word);
+        assertTrue(word.getCycle().stream().noneMatch(l -> l.contains("p")));
+        assertTrue(word.getPrefix().stream().anyMatch(l -> l.contains("p")));
+        assertFalse(eventually.isEquivalentTo(infinitelyOften("p")));
+        assertTrue(infinitelyOften("p").isEquivalentTo(infinitelyOften("p")));
+
+        Lasso<String> rejected = infinitelyOften("p").universalityCounterexample(new HashSet<>(alphabet));
+        assertNotNull(rejected);
+        assertTrue(rejected.getCycle().stream().noneMatch(l -> l.contains("p")));
+
+        // Infinitely often p, or eventually always not p.
+        Automaton<String, String> either = infinitelyOften("p");
+        either.setInitial("never");
+        either.setAccepting("never");
+        for (Set<String> label : alphabet) {
+            if (!label.contains("p")) {
+                either.addTransition("q0", label, "never");
+                either.addTransition("q1", label, "never");
+                either.addTransition("never", label, "never");
+            }
+        }
+        assertTrue(either.isUniversal(new HashSet<>(alphabet)));
+    }
+
+    @Test(timeout = 2000)
+    public void inclusionCounterexampleNeedsEvenCycle() throws Exception {
+        List<Set<String>> alphabet = List.of(Set.of(), Set.of("p"));
+
+        // p at infinitely many even positions; no letter graph is idempotent.
+        Automaton<String, String> even = new Automaton<>();
+        even.setInitial("E");
+        even.setAccepting("F");
+        even.addTransition("E", Set.of("p"), "F");
+        even.addTransition("E", Set.of(), "O");
+        for (Set<String> label : alphabet) {
+            even.addTransition("O", label, "E");
+            even.addTransition("F", label, "E");
+        }
+
+        Automaton<String, String> always = new Automaton<>();
+        always.setInitial("s");
+        always.setAccepting("s");
+        always.addTransition("s", Set.of("p"), "s");
+        assertTrue(always.isIncludedIn(even));
+
+        Lasso<String> word = even.universalityCounterexample(new HashSet<>(alphabet));
+        assertNotNull(word);
+        List<Set<String>> letters = new ArrayList<>(word.getPrefix());
+        for (int i = 0; i < 2; i++) {
+            letters.addAll(word.getCycle());
+        }
+        for (int i = word.getPrefix().size(); i < letters.size(); i++) {
+            assertFalse(i % 2 == 0 && letters.get(i).contains("p"));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void simulationReductionKeepsLanguage() throws Exception {
+        // Infinitely often p, with the accepting state split in two.
+        Automaton<String, String> split = new Automaton<>();
+        split.setInitial("q0");
+        split.setAccepting("q1");
+        split.setAccepting("q2");
+        for (Set<String> label : List.<Set<String>>of(Set.of(), Set.of("p"), Set.of("q"), Set.of("p", "q"))) {
+            String to = label.contains("p") ? (label.contains("q") ? "q2" : "q1") : "q0";
+            for (String from : List.of("q0", "q1", "q2")) {
+                split.addTransition(from, label, to);
+            }
+        }
+        Automaton<String, String> reduced = SimulationReduction.reduce(split);
+        assertEquals(2, reduced.getTransitions().size());
+        assertEquals(1, reduced.getAcceptingStates().size());
+        assertTrue(reduced.isEquivalentTo(split));
+
+        LTL<String> a = LTL.ap("a");
+        LTL<String> b = LTL.ap("b");
+        LTL<String> formula = LTL.and(LTL.until(a, b), LTL.next(LTL.until(LTL.true_(), a)));
+        Automaton<?, String> plain = FvmFacade.get().GNBA2NBA(new LtlToGnba<>(formula).translate());
+        Automaton<?, String> small = FvmFacade.get().LTL2NBA(formula);
+        assertTrue(small.getTransitions().size() < plain.getTransitions().size());
+        assertTrue(small.isEquivalentTo(plain));
+    }
+
+    @Test(timeout = 2000)
+    public void productAndNestedDfs() throws Exception {
+        TransitionSystem<String, String, String> lasso = lassoTs();
+
+        TransitionSystem<Pair<String, String>, String, String> product = FvmFacade.get().product(lasso, infinitelyOften("p"));
+        assertEquals(Set.of(new Pair<>("s0", "q0")), product.getInitialStates());
+        assertEquals(Set.of(new Pair<>("s0", "q0"), new Pair<>("s1", "q1"), new Pair<>("s2", "q0")), product.getStates());
+        assertEquals(Set.of("q1"), product.getLabel(new Pair<>("s1", "q1")));
+
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(lasso, infinitelyOften("q")) instanceof VerificationSucceeded);
+
+        VerificationResult<String> result = FvmFacade.get().verifyAnOmegaRegularProperty(lasso, infinitelyOften("p"));
+        assertTrue(result instanceof VerificationFailed);
+        VerificationFailed<String> failed = (VerificationFailed<String>) result;
+        List<String> path = new ArrayList<>(failed.getPrefix());
+        path.addAll(failed.getCycle());
+        path.add(failed.getCycle().get(0));
+        assertTrue(lasso.getInitialStates().contains(path.get(0)));
+        assertTrue(FvmFacade.get().isExecutionFragment(lasso, alternate(path, "a")));
+        assertTrue(failed.getCycle().contains("s1"));
+    }
+
+    @Test(timeout = 5000)
+    public void swarmEmptinessCheck() throws Exception {
+        // A ring of 2000 states, where p only holds in state 1000.
+        TransitionSystem<Integer, String, String> ring = TSTestUtils.makeCircularTs(2000);
+        ring.addToLabel(1000, "p");
+
+        for (int threads : new int[]{1, 4}) {
+            assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(ring, infinitelyOften("q"), threads)
+                    instanceof VerificationSucceeded);
+
+            VerificationResult<Integer> result = FvmFacade.get().verifyAnOmegaRegularProperty(ring, infinitelyOften("p"), threads);
+            assertTrue(result instanceof VerificationFailed);
+            VerificationFailed<Integer> failed = (VerificationFailed<Integer>) result;
+            assertEquals(2000, failed.getCycle().size());
+            assertTrue(failed.getCycle().contains(1000));
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void generalizedEmptinessCheck() throws Exception {
+        MultiColorAutomaton<String, String> gnba = pAndNotPInfinitelyOften();
+
+        TransitionSystem<String, String, String> lasso = lassoTs();
+        VerificationResult<String> result = FvmFacade.get().verifyAnOmegaRegularProperty(lasso, gnba);
+        assertTrue(result instanceof VerificationFailed);
+        VerificationFailed<String> failed = (VerificationFailed<String>) result;
+        assertEquals(List.of("s0"), failed.getPrefix());
+        assertEquals(Set.of("s1", "s2"), new HashSet<>(failed.getCycle()));
+        assertEquals(2, failed.getCycle().size());
+
+        TransitionSystem<String, String, String> stuck = stuckTs();
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(stuck, gnba) instanceof VerificationSucceeded);
+
+        MultiColorAutomaton<String, String> anyRun = new MultiColorAutomaton<>();
+        anyRun.setInitial("i");
+        anyRun.addTransition("i", Set.of(), "i");
+        anyRun.addTransition("i", Set.of("p"), "i");
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(stuck, anyRun) instanceof VerificationFailed);
+    }
+
+    @Test(timeout = 2000)
+    public void gnbaToNbaCreatesReachableCopiesOnly() throws Exception {
+        MultiColorAutomaton<String, String> gnba = pAndNotPInfinitelyOften();
+        gnba.addTransition("unreachable", Set.of("p"), "p");
+        gnba.setAccepting("unreachable", 0);
+
+        Automaton<?, String> nba = FvmFacade.get().GNBA2NBA(gnba);
+        assertEquals(Set.of(Pair.pair("i", 0)), nba.getInitialStates());
+        assertEquals(Set.of(Pair.pair("i", 0), Pair.pair("p", 0), Pair.pair("np", 0), Pair.pair("p", 1),
+                Pair.pair("np", 1)), nba.getTransitions().keySet());
+        assertEquals(Set.of(Pair.pair("p", 0)), nba.getAcceptingStates());
+
+        TransitionSystem<String, String, String> lasso = lassoTs();
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(lasso, nba) instanceof VerificationFailed);
+        TransitionSystem<String, String, String> stuck = stuckTs();
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(stuck, nba) instanceof VerificationSucceeded);
+    }
+
+    @Test(timeout = 2000)
+    public void ltlToNba() throws Exception {
+        LTL<String> a = LTL.ap("a");
+        LTL<String> b = LTL.ap("b");
+        LTL<String> aUntilB = LTL.until(a, b);
+        LTL<String> alwaysA = LTL.not(LTL.until(LTL.true_(), LTL.not(a)));
+        LTL<String> alwaysEventuallyB = LTL.not(LTL.until(LTL.true_(), LTL.not(LTL.until(LTL.true_(), b))));
+
+        // s0 {a} -> s1 {a} -> s2 {b} -> s1
+        TransitionSystem<String, String, String> good = new TransitionSystem<>();
+        good.addInitialState("s0");
+        good.addTransitionFrom("s0").action("x").to("s1");
+        good.addTransitionFrom("s1").action("x").to("s2");
+        good.addTransitionFrom("s2").action("x").to("s1");
+        good.addToLabel("s0", "a");
+        good.addToLabel("s1", "a");
+        good.addToLabel("s2", "b");
+
+        // s0 {a} -> s0
+        TransitionSystem<String, String, String> bad = new TransitionSystem<>();
+        bad.addInitialState("s0");
+        bad.addTransitionFrom("s0").action("x").to("s0");
+        bad.addToLabel("s0", "a");
+
+        assertTrue(satisfies(good, aUntilB));
+        assertFalse(satisfies(bad, aUntilB));
+        assertFalse(satisfies(good, alwaysA));
+        assertTrue(satisfies(bad, alwaysA));
+        assertTrue(satisfies(good, alwaysEventuallyB));
+        assertFalse(satisfies(bad, alwaysEventuallyB));
+        assertTrue(satisfies(good, LTL.next(LTL.next(b))));
+        assertFalse(satisfies(good, LTL.next(b)));
+    }
+
+    @Test(timeout = 2000)
+    public void symbolicAutomatonOverManyPropositions() throws Exception {
+        // A ring of 40 states; state i is labeled p<i> and p<i+1>.
+        TransitionSystem<Integer, String, String> ring = new TransitionSystem<>();
+        ring.addInitialState(0);
+        for (int i = 0; i < 40; i++) {
+            ring.addTransitionFrom(i).action("next").to((i + 1) % 40);
+            ring.addToLabel(i, "p" + i);
+            ring.addToLabel(i, "p" + (i + 1));
+        }
+
+        // Violations: infinitely often p3 and p4 hold, and p5 does not. An
+        // explicit automaton would need a transition for each of the 2^40
+        // letters.
+        SymbolicAutomaton<String, String> violations = new SymbolicAutomaton<>();
+        violations.setInitial("wait");
+        violations.addTransition("wait", Guard.TRUE, "wait");
+        violations.addTransition("wait", violations.guard(Set.of("p3", "p4"), Set.of("p5")), "seen");
+        violations.addTransition("seen", Guard.TRUE, "wait");
+        violations.addTransition("seen", violations.guard(Set.of("p3", "p4"), Set.of("p5")), "seen");
+        violations.setAccepting("seen", 0);
+        assertEquals(Set.of("p3", "p4", "p5"), new HashSet<>(violations.getPropositions()));
+        assertEquals(Set.of("wait", "seen"), violations.nextStates("wait", Set.of("p3", "p4", "p39")));
+        assertEquals(Set.of("wait"), violations.nextStates("wait", Set.of("p3", "p4", "p5")));
+
+        VerificationResult<Integer> result = FvmFacade.get().verifyAnOmegaRegularProperty(ring, violations);
+        assertTrue(result instanceof VerificationFailed);
+        assertTrue(((VerificationFailed<Integer>) result).getCycle().contains(3));
+
+        ring.addToLabel(3, "p5");
+        assertTrue(FvmFacade.get().verifyAnOmegaRegularProperty(ring, violations) instanceof VerificationSucceeded);
+    }
+
+    @Test(timeout = 2000)
+    public void symbolicLtlIgnoresOtherPropositions() throws Exception {
+        LTL<String> a = LTL.ap("a");
+        LTL<String> b = LTL.ap("b");
+        LTL<String> aUntilB = LTL.until(a, b);
+
+        // s0 {a, c} -> s1 {b, c} -> s1
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        ts.addInitialState("s0");
+        ts.addTransitionFrom("s0").action("x").to("s1");
+        ts.addTransitionFrom("s1").action("x").to("s1");
+        ts.addToLabel("s0", "a");
+        ts.addToLabel("s0", "c");
+        ts.addToLabel("s1", "b");
+        ts.addToLabel("s1", "c");
+
+        assertTrue(satisfiesSymbolic(ts, aUntilB));
+        assertTrue(satisfiesSymbolic(ts, LTL.until(b, a)));
+        assertFalse(satisfiesSymbolic(ts, LTL.until(b, LTL.and(a, b))));
+        assertTrue(satisfiesSymbolic(ts, LTL.next(b)));
+        assertFalse(satisfiesSymbolic(ts, LTL.next(a)));
+    }
+
+    private static <S> boolean satisfiesSymbolic(TransitionSystem<S, String, String> ts, LTL<String> property) {
+        SymbolicAutomaton<?, String> violations = new LtlToGnba<>(LTL.not(property)).translateSymbolic();
+        return FvmFacade.get().verifyAnOmegaRegularProperty(ts, violations) instanceof VerificationSucceeded;
+    }
+
+    /**
+     * Checks {@code property} on a system labeled over {a, b}.
+     */
+    private static <S> boolean satisfies(TransitionSystem<S, String, String> ts, LTL<String> property) {
+        MultiColorAutomaton<?, String> gnba = new LtlToGnba<>(LTL.not(property), Set.of("a", "b")).translate();
+        Automaton<?, String> violations = FvmFacade.get().GNBA2NBA(gnba);
+        return FvmFacade.get().verifyAnOmegaRegularProperty(ts, violations) instanceof VerificationSucceeded;
+    }
+
+    private static AlternatingSequence<String, String> alternate(List<String> states, String action) {
+        List<String> actions = new ArrayList<>(Collections.nCopies(states.size() - 1, action));
+        return new AlternatingSequence<>(states, actions);
+    }
+
+    @Test(timeout = 5000)
+    public void reachLongLinearTs() throws Exception {
+        TransitionSystem<Integer, String, String> ts = TSTestUtils.makeLinearTs(100_000);
+        ts.addState(100_001);
+        Set<Integer> reachable = FvmFacade.get().reach(ts);
+        assertEquals(100_000, reachable.size());
+        assertFalse(reachable.contains(100_001));
+    }
+
+    @Test(timeout = 2000)
+    public void reachabilityEngineBoundsAndStops() throws Exception {
+        CompactTransitionSystem<Integer, String, String> cts = CompactTransitionSystem.from(TSTestUtils.makeCircularTs(10));
+        int[] init = cts.getInitialStateIds();
+
+        for (ReachabilityEngine.Order order : ReachabilityEngine.Order.values()) {
+            ReachabilityEngine.Result bounded = new ReachabilityEngine(cts).order(order).maxDepth(3).run(init);
+            assertEquals(4, bounded.getVisited().cardinality());
+            assertFalse(bounded.isFound());
+
+            int target = cts.getStateId(7);
+            ReachabilityEngine.Result stopped = new ReachabilityEngine(cts).order(order).stopWhen(id -> id == target).run(init);
+            assertEquals(target, stopped.getFound());
+            assertFalse(stopped.getVisited().get(cts.getStateId(9)));
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void circuitStatesAreReachableOnes() throws Exception {
+        // r' = x | r, y = !(x ^ r)
+        Circuit c = new Circuit() {
+            @Override
+            public Set<String> getInputPortNames() {
+                return Set.of("x");
+            }
+
+            @Override
+            public Set<String> getRegisterNames() {
+                return Set.of("r");
+            }
+
+            @Override
+            public Set<String> getOutputPortNames() {
+                return Set.of("y");
+            }
+
+            @Override
+            public Map<String, Boolean> updateRegisters(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                return Map.of("r", inputs.get("x") || registers.get("r"));
+            }
+
+            @Override
+            public Map<String, Boolean> computeOutputs(Map<String, Boolean> inputs, Map<String, Boolean> registers) {
+                return Map.of("y", inputs.get("x") == registers.get("r"));
+            }
+        };
+
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                = FvmFacade.get().transitionSystemFromCircuit(c);
+        assertEquals(4, ts.getStates().size());
+        assertEquals(8, ts.getTransitions().size());
+        assertEquals(Set.of(Pair.pair(Map.of("x", false), Map.of("r", false)),
+                Pair.pair(Map.of("x", true), Map.of("r", false))), ts.getInitialStates());
+        assertEquals(Set.of("y"), ts.getLabel(Pair.pair(Map.of("x", false), Map.of("r", false))));
+        assertEquals(Set.of("x"), ts.getLabel(Pair.pair(Map.of("x", true), Map.of("r", false))));
+        assertEquals(Set.of("x", "r", "y"), ts.getLabel(Pair.pair(Map.of("x", true), Map.of("r", true))));
+        assertTrue(ts.getTransitions().contains(new TSTransition<>(Pair.pair(Map.of("x", true), Map.of("r", false)),
+                Map.of("x", false), Pair.pair(Map.of("x", false), Map.of("r", true)))));
+    }
+
+    @Test(timeout = 2000)
+    public void bitCircuitWithManyRegisters() throws Exception {
+        // A token passed around a ring of 24 registers when "go" is set.
+        Set<String> registers = new LinkedHashSet<>();
+        for (int i = 0; i < 24; i++) {
+            registers.add("r" + i);
+        }
+        BitCircuit ring = new BitCircuit() {
+            @Override
+            public Set<String> getInputPortNames() {
+                return Set.of("go");
+            }
+
+            @Override
+            public Set<String> getRegisterNames() {
+                return registers;
+            }
+
+            @Override
+            public Set<String> getOutputPortNames() {
+                return Set.of("last");
+            }
+
+            @Override
+            public long updateRegisters(long inputs, long regs) {
+                if (regs == 0) {
+                    return 1;
+                }
+                return (inputs == 0) ? regs : ((regs << 1) | (regs >>> 23)) & 0xFFFFFF;
+            }
+
+            @Override
+            public long computeOutputs(long inputs, long regs) {
+                return regs >>> 23;
+            }
+        };
+
+        TransitionSystem<Pair<Map<String, Boolean>, Map<String, Boolean>>, Map<String, Boolean>, Object> ts
+                = FvmFacade.get().transitionSystemFromCircuit(ring);
+        // No token, or the token in one of 24 registers, times 2 inputs.
+        assertEquals(50, ts.getStates().size());
+        assertEquals(100, ts.getTransitions().size());
+        assertEquals(2, ts.getInitialStates().size());
+        long withLast = ts.getStates().stream().filter(s -> ts.getLabel(s).contains("last")).count();
+        assertEquals(2, withLast);
+        assertEquals(Map.of("r5", true), filterTrue(ring.updateRegisters(Map.of("go", true),
+                BitCircuit.unpack(registers, 1L << 4))));
+    }
+
+    private static Map<String, Boolean> filterTrue(Map<String, Boolean> values) {
+        Map<String, Boolean> result = new HashMap<>();
+        values.forEach((name, value) -> {
+            if (value) {
+                result.put(name, value);
+            }
+        });
+        return result;
+    }
+
 }
 
 class AcDef implements ActionDef{
@@ -0,0 +1,46 @@
+package il.ac.bgu.cs.formalmethodsintro.base;
+
+import static il.ac.bgu.cs.formalmethodsintro.base.SimulationReductionTest.corpus;
+import static il.ac.bgu.cs.formalmethodsintro.base.SimulationReductionTest.countTransitions;
+
+import java.util.Map;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Degeneralization;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SimulationReduction;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToGnba;
+
+/**
+ * Reports how much {@link SimulationReduction} shrinks the Büchi automata
+ * translated from the corpus of {@link SimulationReductionTest}: the number
+ * of states and transitions of the plain degeneralized automaton, and of the
+ * one {@link FvmFacade#LTL2NBA(LTL)} returns.
+ */
+public class SimulationReductionBenchmark {
+
+    public static void main(String[] args) {
+        System.out.printf("%-22s %12s %12s %12s %12s%n", "formula", "states", "reduced", "transitions", "reduced");
+        int totalStates = 0;
+        int totalReducedStates = 0;
+        int totalTransitions = 0;
+        int totalReducedTransitions = 0;
+        for (Map.Entry<String, LTL<String>> entry : corpus().entrySet()) {
+            MultiColorAutomaton<?, String> plain = Degeneralization.toNba(new LtlToGnba<>(entry.getValue()).translate());
+            MultiColorAutomaton<?, String> reduced = FvmFacade.get().LTL2NBA(entry.getValue());
+            int states = plain.getTransitions().size();
+            int reducedStates = reduced.getTransitions().size();
+            int transitions = countTransitions(plain);
+            int reducedTransitions = countTransitions(reduced);
+            System.out.printf("%-22s %12d %12d %12d %12d%n", entry.getKey(), states, reducedStates, transitions,
+                    reducedTransitions);
+            totalStates += states;
+            totalReducedStates += reducedStates;
+            totalTransitions += transitions;
+            totalReducedTransitions += reducedTransitions;
+        }
+        System.out.printf("%-22s %12d %12d %12d %12d%n", "total", totalStates, totalReducedStates, totalTransitions,
+                totalReducedTransitions);
+    }
+
+}
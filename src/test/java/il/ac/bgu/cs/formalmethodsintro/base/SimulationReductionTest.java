@@ -0,0 +1,83 @@
+package il.ac.bgu.cs.formalmethodsintro.base;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Automaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.Degeneralization;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.MultiColorAutomaton;
+import il.ac.bgu.cs.formalmethodsintro.base.automata.SimulationReduction;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LTL;
+import il.ac.bgu.cs.formalmethodsintro.base.ltl.LtlToGnba;
+
+/**
+ * Checks {@link SimulationReduction} on the Büchi automata translated from a
+ * corpus of LTL formulas: {@link FvmFacade#LTL2NBA(LTL)} must never return
+ * more states or transitions than the plain degeneralized automaton, and must
+ * accept the same language. {@link SimulationReductionBenchmark} reports the
+ * sizes.
+ */
+public class SimulationReductionTest {
+
+    @Test(timeout = 5000)
+    public void reductionNeverGrowsAndKeepsLanguage() throws Exception {
+        for (Map.Entry<String, LTL<String>> entry : corpus().entrySet()) {
+            Automaton<?, String> plain = Degeneralization.toNba(new LtlToGnba<>(entry.getValue()).translate());
+            Automaton<?, String> reduced = FvmFacade.get().LTL2NBA(entry.getValue());
+            assertTrue(entry.getKey(), reduced.getTransitions().size() <= plain.getTransitions().size());
+            assertTrue(entry.getKey(), countTransitions(reduced) <= countTransitions(plain));
+            assertTrue(entry.getKey(), reduced.isEquivalentTo(plain));
+        }
+    }
+
+    /**
+     * @return The formulas, by their usual notation.
+     */
+    static Map<String, LTL<String>> corpus() {
+        LTL<String> p = LTL.ap("p");
+        LTL<String> q = LTL.ap("q");
+        LTL<String> r = LTL.ap("r");
+
+        Map<String, LTL<String>> corpus = new LinkedHashMap<>();
+        corpus.put("p U q", LTL.until(p, q));
+        corpus.put("F p", eventually(p));
+        corpus.put("G p", always(p));
+        corpus.put("G F p", always(eventually(p)));
+        corpus.put("F G p", eventually(always(p)));
+        corpus.put("G (p -> F q)", always(implies(p, eventually(q))));
+        corpus.put("G F p & G F q", LTL.and(always(eventually(p)), always(eventually(q))));
+        corpus.put("(p U q) U r", LTL.until(LTL.until(p, q), r));
+        corpus.put("X X p & F q", LTL.and(LTL.next(LTL.next(p)), eventually(q)));
+        corpus.put("G (p -> X (q U r))", always(implies(p, LTL.next(LTL.until(q, r)))));
+        corpus.put("!(G F p -> G F q)", LTL.not(implies(always(eventually(p)), always(eventually(q)))));
+        return corpus;
+    }
+
+    static int countTransitions(MultiColorAutomaton<?, String> aut) {
+        int count = 0;
+        for (Map<Set<String>, ? extends Set<?>> out : aut.getTransitions().values()) {
+            for (Set<?> targets : out.values()) {
+                count += targets.size();
+            }
+        }
+        return count;
+    }
+
+    private static LTL<String> eventually(LTL<String> f) {
+        return LTL.until(LTL.true_(), f);
+    }
+
+    private static LTL<String> always(LTL<String> f) {
+        return LTL.not(eventually(LTL.not(f)));
+    }
+
+    private static LTL<String> implies(LTL<String> f, LTL<String> g) {
+        return LTL.not(LTL.and(f, LTL.not(g)));
+    }
+
+}
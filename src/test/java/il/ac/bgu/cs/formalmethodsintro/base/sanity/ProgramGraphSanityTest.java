@@ -1,12 +1,32 @@
 package il.ac.bgu.cs.formalmethodsintro.base.sanity;
 
 import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ChannelSystemSuccessors;
+import il.ac.bgu.cs.formalmethodsintro.base.channelsystem.ParserBasedInterleavingActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.Evaluator;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaCompiler;
+import il.ac.bgu.cs.formalmethodsintro.base.nanopromela.NanoPromelaParseCache;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ActionDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.Environment;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.PGTransition;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedActDef;
+import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ParserBasedCondDef;
 import il.ac.bgu.cs.formalmethodsintro.base.programgraph.ProgramGraph;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.util.Pair;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.junit.Test;
+import static il.ac.bgu.cs.formalmethodsintro.base.util.CollectionHelper.p;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  *
@@ -33,6 +53,23 @@ public class ProgramGraphSanityTest {
         assertEquals(Set.of("from"), sut.getInitialLocations());
     }
 
+    @Test
+    public void outgoingTransitionsFollowTransitions() {
+        ProgramGraph<String, String> sut = FvmFacade.get().createProgramGraph();
+        PGTransition<String, String> t1 = new PGTransition<>("from", "true", "act", "to");
+        PGTransition<String, String> t2 = new PGTransition<>("from", "true", "act2", "from");
+        sut.addTransition(t1);
+        sut.addTransition(t2);
+        sut.addTransition(new PGTransition<>("to", "true", "act", "from"));
+        assertEquals(Set.of(t1, t2), sut.getOutgoingTransitions("from"));
+        assertEquals(Set.of(), sut.getOutgoingTransitions("elsewhere"));
+
+        sut.removeTransition(t1);
+        assertEquals(Set.of(t2), sut.getOutgoingTransitions("from"));
+        sut.removeTransition(t2);
+        assertEquals(Set.of(), sut.getOutgoingTransitions("from"));
+    }
+
     @Test
     public void testEqualities() {
         ProgramGraph<String, String> sut1 = FvmFacade.get().createProgramGraph();
@@ -58,4 +95,99 @@ public class ProgramGraphSanityTest {
         assertNotEquals(sut1, sut2);
     }
 
+    @Test
+    public void parsedDefinitionsAreCached() {
+        ParserBasedCondDef cond = new ParserBasedCondDef();
+        ParserBasedActDef act = new ParserBasedActDef();
+        ParserBasedInterleavingActDef joined = new ParserBasedInterleavingActDef();
+
+        long misses = NanoPromelaParseCache.getMissCount();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cond.evaluate(Map.of("cacheX", i), "cacheX < 10"));
+            assertEquals(Map.of("cacheX", i + 1), act.effect(Map.of("cacheX", i), "cacheX := cacheX + 1"));
+            assertTrue(joined.isOneSidedAction("_cacheC?cacheX"));
+            assertFalse(joined.isOneSidedAction("cacheX := 1"));
+        }
+        assertEquals(misses + 4, NanoPromelaParseCache.getMissCount());
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                act.isMatchingAction("cacheX := := 1");
+                fail("Unparsable action should throw");
+            } catch (ParseCancellationException expected) {
+            }
+        }
+        assertEquals(misses + 5, NanoPromelaParseCache.getMissCount());
+    }
+
+    @Test
+    public void compiledCodeMatchesEvaluator() {
+        Map<String, Object> eval = Map.of("x", 7, "y", -3, "C", List.of(4, 5));
+        for (String cond : List.of("x ^ 2 > y", "x % 3 == 1 && !(y >= 0)", "y % 5 != 2 || false",
+                "-x * 2 / 3 <= size(C) - z", "(x + y) - 1 < 0")) {
+            assertEquals(cond, new Evaluator(eval).evaluate(NanoPromelaParseCache.condition(cond)),
+                    NanoPromelaCompiler.compile(NanoPromelaParseCache.condition(cond)).evaluate(eval));
+        }
+        for (String act : List.of("skip", "x := x ^ y", "atomic{x := y; y := x}", "C!x+1", "C?z", "D?z")) {
+            assertEquals(act, new Evaluator(eval).evaluate(NanoPromelaParseCache.action(act)),
+                    NanoPromelaCompiler.compile(NanoPromelaParseCache.action(act)).evaluate(eval));
+        }
+    }
+
+    @Test
+    public void environmentsBehaveAsMaps() {
+        Environment.Layout layout = new Environment.Layout();
+        Map<String, Object> plain = Map.of("x", 7, "C", List.of(4, 5));
+        Environment env = Environment.of(layout, plain);
+
+        assertEquals(plain, env);
+        assertEquals(env, plain);
+        assertEquals(plain.hashCode(), env.hashCode());
+        assertEquals(7, env.get("x"));
+        assertFalse(env.containsKey("y"));
+
+        Environment updated = env.with("y", 1);
+        assertEquals(plain, env);
+        assertEquals(Map.of("x", 7, "y", 1, "C", List.of(4, 5)), updated);
+        assertNotEquals(env, updated);
+        assertEquals(updated, Environment.of(layout, Map.of("y", 1, "x", 7, "C", List.of(4, 5))));
+
+        assertEquals(Map.of("x", 2, "y", 7, "C", List.of(4, 5)),
+                new ParserBasedActDef().effect(env, "atomic{y := x; x := size(C)}"));
+        assertEquals(Map.of("x", 7, "y", 4, "C", List.of(5)), new ParserBasedActDef().effect(env, "C?y"));
+    }
+
+    @Test(timeout = 2000)
+    public void channelSystemHandshakesAcrossComponents() {
+        ProgramGraph<String, String> reader = FvmFacade.get().createProgramGraph();
+        reader.setInitial("r0", true);
+        reader.addTransition(new PGTransition<>("r0", "", "_C?x", "r1"));
+
+        ProgramGraph<String, String> idle = FvmFacade.get().createProgramGraph();
+        idle.setInitial("i0", true);
+        idle.addTransition(new PGTransition<>("i0", "", "y := 1", "i1"));
+
+        ProgramGraph<String, String> writer = FvmFacade.get().createProgramGraph();
+        writer.setInitial("w0", true);
+        writer.addTransition(new PGTransition<>("w0", "", "_C!5", "w1"));
+
+        ChannelSystem<String, String> cs = new ChannelSystem<>(List.of(reader, idle, writer));
+        ChannelSystemSuccessors<String, String> successors = new ChannelSystemSuccessors<>(cs);
+
+        List<String> initial = List.of("r0", "i0", "w0");
+        assertEquals(Set.of(initial), successors.getInitialLocations());
+        assertEquals(Set.of(
+                new PGTransition<>(initial, "", "y := 1", List.of("r0", "i1", "w0")),
+                new PGTransition<>(initial, "", "_C?x|_C!5", List.of("r1", "i0", "w1"))),
+                Set.copyOf(successors.getOutgoingTransitions(initial)));
+
+        // Joined actions must reach the interleaving definition first.
+        Set<ActionDef> actionDefs = new LinkedHashSet<>(
+                List.of(new ParserBasedInterleavingActDef(), new ParserBasedActDef()));
+        TransitionSystem<Pair<List<String>, Map<String, Object>>, String, String> ts
+                = FvmFacade.get().transitionSystemFromChannelSystem(cs, actionDefs, Set.of(new ParserBasedCondDef()));
+        assertTrue(ts.getStates().contains(p(List.of("r1", "i0", "w1"), Map.of("x", 5))));
+        assertTrue(ts.getStates().contains(p(List.of("r1", "i1", "w1"), Map.of("x", 5, "y", 1))));
+    }
+
 }
@@ -1,12 +1,42 @@
 package il.ac.bgu.cs.formalmethodsintro.base.sanity;
 
 import static il.ac.bgu.cs.formalmethodsintro.base.TSTestUtils.makeLinearTs;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import il.ac.bgu.cs.formalmethodsintro.base.FvmFacade;
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.InvalidXmlException;
+import il.ac.bgu.cs.formalmethodsintro.base.exceptions.TransitionSystemPart;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.AlternatingSequence;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.BinaryTransitionSystemFormat;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.CompactTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.IndexedTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.MappedTransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlFormat;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.StAXTransitionSystemXmlReader;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TSTransition;
 import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystem;
+import il.ac.bgu.cs.formalmethodsintro.base.transitionsystem.TransitionSystemXmlConsumer;
+import il.ac.bgu.cs.formalmethodsintro.base.util.GraphvizPainter;
+import il.ac.bgu.cs.formalmethodsintro.base.util.TSSerializationHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Testing the consistency of a transition system implementation.
@@ -15,6 +45,13 @@ import static org.junit.Assert.assertEquals;
  */
 public class TransitionSystemConsistencyTest {
 
+    /**
+     * Mapped files are released only when garbage collected, so they are
+     * deleted on a best-effort basis.
+     */
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test(timeout = 2000)
     public void transitionToNonexistentState() {
         TransitionSystem<Integer, String, String> ts = makeLinearTs(5);
@@ -47,6 +84,20 @@ public class TransitionSystemConsistencyTest {
                 Set.of(1, 2, 3, 4, 5, 700), ts.getStates());
     }
 
+    @Test(timeout = 2000)
+    public void adjacencyFollowsTransitions() {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(4);
+        ts.addTransition(new TSTransition<>(1, "a1", 3));
+        assertEquals(Set.of(2, 3), ts.getSuccessors(1));
+        assertEquals(Set.of(2, 3), ts.getSuccessors(1, "a1"));
+        assertEquals(Set.of(1, 2), ts.getPredecessors(3));
+
+        ts.removeTransition(new TSTransition<>(1, "a1", 2));
+        assertEquals(Set.of(3), ts.getSuccessors(1));
+        assertEquals(Set.of(), ts.getPredecessors(2));
+        assertEquals(Set.of(), ts.getSuccessors(1, "a2"));
+    }
+
     @Test(timeout = 2000)
     public void illegalLabel() {
         TransitionSystem<Integer, String, String> ts = makeLinearTs(4);
@@ -55,4 +106,382 @@ public class TransitionSystemConsistencyTest {
         assertEquals(Set.of("g", "not-there"), ts.getAtomicPropositions());
     }
 
+    @Test(timeout = 2000)
+    public void compactRoundTrip() {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(4);
+        ts.addTransition(new TSTransition<>(1, "a1", 3));
+        ts.addAtomicPropositions("p", "q");
+        ts.addToLabel(2, "p");
+        ts.addToLabel(2, "q");
+
+        CompactTransitionSystem<Integer, String, String> cts = CompactTransitionSystem.from(ts);
+        assertEquals(4, cts.getTransitionCount());
+        int one = cts.getStateId(1);
+        assertEquals(2, cts.getPostEnd(one) - cts.getPostStart(one));
+        int three = cts.getStateId(3);
+        assertEquals(2, cts.getPreEnd(three) - cts.getPreStart(three));
+        assertTrue(cts.hasLabel(cts.getStateId(2), cts.getAtomicPropositionId("q")));
+        assertEquals(-1, cts.getStateId(700));
+
+        assertEquals(ts, cts.toTransitionSystem());
+    }
+
+    @Test(timeout = 2000, expected = UnsupportedOperationException.class)
+    public void outgoingSuccessorsAreUnmodifiable() {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(3);
+        ts.getOutgoing(1).get("a1").add(3);
+    }
+
+    @Test(timeout = 2000)
+    public void streamingXmlRead() throws Exception {
+        TransitionSystem<String, String, String> ts = new TransitionSystem<>();
+        ts.setName("streamed");
+        ts.addInitialState("s1");
+        ts.addTransition(new TSTransition<>("s1", "go", "s2"));
+        ts.addTransition(new TSTransition<>("s2", "go", "s1"));
+        ts.addTransition(new TSTransition<>("s2", "stay", "s2"));
+        ts.addAtomicPropositions("p", "q");
+        ts.addToLabel("s2", "p");
+        ts.addToLabel("s2", "q");
+
+        StringWriter xml = new StringWriter();
+        new StAXTransitionSystemXmlFormat().write(ts, xml);
+
+        StAXTransitionSystemXmlReader reader = new StAXTransitionSystemXmlReader();
+        int[] transitions = new int[1];
+        List<String> labels = new ArrayList<>();
+        reader.read(new StringReader(xml.toString()), new TransitionSystemXmlConsumer() {
+            @Override
+            public void transition(String from, String action, String to) {
+                transitions[0]++;
+            }
+
+            @Override
+            public void label(String state, String ap) {
+                labels.add(state + ":" + ap);
+            }
+        });
+        assertEquals(3, transitions[0]);
+        assertEquals(Set.of("s2:p", "s2:q"), new HashSet<>(labels));
+
+        CompactTransitionSystem<String, String, String> cts = reader.readCompact(new StringReader(xml.toString()));
+        assertEquals(ts, cts.toTransitionSystem());
+    }
+
+    @Test(timeout = 2000, expected = InvalidXmlException.class)
+    public void streamingXmlReadReportsMissingAttribute() throws Exception {
+        String xml = "<transitionSystem><states><state/></states></transitionSystem>";
+        new StAXTransitionSystemXmlReader().read(new StringReader(xml), new TransitionSystemXmlConsumer() {
+        });
+    }
+
+    @Test(timeout = 2000)
+    public void compactXmlReadRejectsUndeclaredState() throws Exception {
+        String xml = "<transitionSystem><states><state sId=\"s1\"/></states><actions><action aId=\"go\"/></actions>\n"
+                + "<transitions><transition from=\"s1\" action=\"go\" to=\"s2\"/></transitions></transitionSystem>";
+        try {
+            new StAXTransitionSystemXmlReader().readCompact(new StringReader(xml));
+            fail("undeclared state accepted");
+        } catch (InvalidXmlException e) {
+            assertEquals(TransitionSystemPart.TRANSITIONS, e.getPart());
+            assertTrue(e.getMessage(), e.getMessage().startsWith("[2: "));
+        }
+    }
+
+    @Test(timeout = 2000, expected = InvalidXmlException.class)
+    public void streamingXmlReadRejectsLabelOutsideEntry() throws Exception {
+        String xml = "<transitionSystem><atomicPropositions><atomicProposition apId=\"ap0\">p</atomicProposition>"
+                + "</atomicPropositions><labelingFunction><label atomicProposition=\"ap0\"/></labelingFunction>"
+                + "</transitionSystem>";
+        new StAXTransitionSystemXmlReader().read(new StringReader(xml), new TransitionSystemXmlConsumer() {
+        });
+    }
+
+    @Test(timeout = 2000)
+    public void binaryRoundTrip() throws Exception {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(300);
+        ts.setName("binary");
+        ts.addTransition(new TSTransition<>(300, "a1", 1));
+        ts.addAtomicPropositions("p", "q");
+        ts.addToLabel(2, "p");
+        ts.addToLabel(200, "p");
+        ts.addToLabel(200, "q");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryTransitionSystemFormat().write(ts, new TSSerializationHelper<Integer, String, String>() {
+            @Override
+            public String serializeState(Integer s) {
+                return "s" + s;
+            }
+
+            @Override
+            public String serializeAction(String a) {
+                return a;
+            }
+
+            @Override
+            public String serializeAtomicProposition(String ap) {
+                return ap;
+            }
+        }, bytes);
+
+        TransitionSystem<String, String, String> read = new BinaryTransitionSystemFormat()
+                .read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("binary", read.getName());
+        assertEquals(300, read.getStates().size());
+        assertEquals(Set.of("s1"), read.getInitialStates());
+        assertEquals(ts.getTransitions().size(), read.getTransitions().size());
+        assertTrue(read.getTransitions().contains(new TSTransition<>("s300", "a1", "s1")));
+        assertEquals(Set.of("p", "q"), read.getLabel("s200"));
+        assertEquals(Set.of(), read.getLabel("s3"));
+
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        new BinaryTransitionSystemFormat().write(read, again);
+        assertEquals(read, new BinaryTransitionSystemFormat().read(new ByteArrayInputStream(again.toByteArray())));
+    }
+
+    @Test(timeout = 2000)
+    public void binaryWriteSortsInitialStates() throws Exception {
+        TransitionSystem<String, String, String> ts = makeLinearTs(300, i -> "s" + i);
+        ts.addInitialState("s200");
+        ts.addInitialState("s100");
+        CompactTransitionSystem<String, String, String> compact = CompactTransitionSystem.from(ts);
+
+        ByteArrayOutputStream sorted = new ByteArrayOutputStream();
+        new BinaryTransitionSystemFormat().write(compact, TSSerializationHelper.identity(), sorted);
+        ByteArrayOutputStream reversed = new ByteArrayOutputStream();
+        new BinaryTransitionSystemFormat().write(new ReversedInitialStates<>(compact), TSSerializationHelper.identity(),
+                reversed);
+
+        assertArrayEquals(sorted.toByteArray(), reversed.toByteArray());
+        TransitionSystem<String, String, String> read = new BinaryTransitionSystemFormat()
+                .read(new ByteArrayInputStream(reversed.toByteArray()));
+        assertEquals(Set.of("s1", "s100", "s200"), read.getInitialStates());
+    }
+
+    @Test(timeout = 2000, expected = IOException.class)
+    public void binaryReadRejectsOtherFormats() throws Exception {
+        new BinaryTransitionSystemFormat().read(new ByteArrayInputStream("<transitionSystem/>".getBytes()));
+    }
+
+    @Test(timeout = 2000)
+    public void mappedSystemMatchesCompact() throws Exception {
+        TransitionSystem<String, String, String> ts = makeLinearTs(200, i -> "s" + i);
+        ts.setName("mapped");
+        ts.addState("unreachable");
+        ts.addTransition(new TSTransition<>("unreachable", "a1", "s1"));
+        ts.addAtomicPropositions("p", "q");
+        ts.addToLabel("s3", "p");
+        ts.addToLabel("s100", "q");
+
+        Path file = tmp.newFile("mapped.fvtm").toPath();
+        MappedTransitionSystem.write(ts, file);
+        MappedTransitionSystem mapped = MappedTransitionSystem.open(file);
+        CompactTransitionSystem<String, String, String> compact = CompactTransitionSystem.from(ts);
+
+        assertEquals("mapped", mapped.getName());
+        assertEquals(compact.getStateCount(), mapped.getStateCount());
+        assertEquals(compact.getTransitionCount(), mapped.getTransitionCount());
+        for (int s = 0; s < compact.getStateCount(); s++) {
+            assertEquals(compact.getState(s), mapped.getState(s));
+            assertEquals(s, mapped.getStateId(compact.getState(s)));
+            assertEquals(compact.getLabel(s), mapped.getLabel(s));
+            assertEquals(compact.getPreEnd(s) - compact.getPreStart(s), mapped.getPreEnd(s) - mapped.getPreStart(s));
+        }
+        assertEquals(-1, mapped.getStateId("s201"));
+        assertTrue(mapped.hasLabel(mapped.getStateId("s100"), mapped.getAtomicPropositionId("q")));
+
+        FvmFacade fvm = FvmFacade.get();
+        assertEquals(fvm.reach(ts), fvm.reach(mapped));
+        assertTrue(fvm.isStateTerminal(mapped, "s200"));
+        assertFalse(fvm.isExecution(mapped, AlternatingSequence.of("s198", "a198", "s199", "a199", "s200")));
+        assertTrue(fvm.isInitialExecutionFragment(mapped, AlternatingSequence.of("s1", "a1", "s2")));
+        assertTrue(fvm.isMaximalExecutionFragment(mapped, AlternatingSequence.of("s199", "a199", "s200")));
+        assertFalse(fvm.isExecutionFragment(mapped, AlternatingSequence.of("s1", "a2", "s2")));
+    }
+
+    @Test(timeout = 2000)
+    public void mappedSystemFindsUnsortedInitialStates() throws Exception {
+        CompactTransitionSystem.Builder<String, String, String> builder = new CompactTransitionSystem.Builder<>();
+        for (int i = 0; i < 5; i++) {
+            builder.addState("s" + i);
+        }
+        builder.addInitialState(0);
+        builder.addInitialState(2);
+        builder.addInitialState(4);
+
+        Path file = tmp.newFile("mapped.fvtm").toPath();
+        MappedTransitionSystem.write(new ReversedInitialStates<>(builder.build()), TSSerializationHelper.identity(),
+                file);
+        MappedTransitionSystem mapped = MappedTransitionSystem.open(file);
+        for (int s = 0; s < 5; s++) {
+            assertEquals(s % 2 == 0, mapped.isInitial(s));
+        }
+    }
+
+    @Test(timeout = 2000, expected = IOException.class)
+    public void mappedOpenRejectsOtherFormats() throws Exception {
+        Path file = tmp.newFile("mapped.xml").toPath();
+        Files.write(file, "<transitionSystem>not mapped</transitionSystem>".getBytes());
+        MappedTransitionSystem.open(file);
+    }
+
+    @Test(timeout = 2000)
+    public void dotOfNeighbourhood() throws Exception {
+        TransitionSystem<Integer, String, String> ts = makeLinearTs(50);
+        ts.addAtomicPropositions("p");
+        ts.addToLabel(2, "p");
+        ts.addToLabel(40, "p");
+        GraphvizPainter<Integer, String, String> painter = new GraphvizPainter<>(
+                s -> "state " + s, Object::toString, Object::toString);
+
+        StringWriter all = new StringWriter();
+        painter.writeDot(ts, all);
+        assertEquals(painter.makeDotCode(ts), all.toString());
+        assertTrue(all.toString().contains("[label=\"state 50\"]"));
+
+        StringWriter near = new StringWriter();
+        painter.writeDot(ts, ts.getInitialStates(), 2, near);
+        String dot = near.toString();
+        assertTrue(dot.contains("[label=\"state 3\"]"));
+        assertFalse(dot.contains("[label=\"state 4\"]"));
+        assertEquals(2, dot.split(" -> ").length - 1);
+        assertTrue(dot.contains("ap_"));
+        assertTrue(dot.endsWith("}"));
+    }
+
+    /**
+     * A view of an indexed system that lists its initial states in decreasing
+     * order, as other implementations than {@link CompactTransitionSystem}
+     * may.
+     */
+    private static class ReversedInitialStates<S, A, P> implements IndexedTransitionSystem<S, A, P> {
+
+        private final IndexedTransitionSystem<S, A, P> ts;
+
+        ReversedInitialStates(IndexedTransitionSystem<S, A, P> ts) {
+            this.ts = ts;
+        }
+
+        @Override
+        public int[] getInitialStateIds() {
+            int[] ids = ts.getInitialStateIds();
+            int[] reversed = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                reversed[i] = ids[ids.length - 1 - i];
+            }
+            return reversed;
+        }
+
+        @Override
+        public String getName() {
+            return ts.getName();
+        }
+
+        @Override
+        public int getStateCount() {
+            return ts.getStateCount();
+        }
+
+        @Override
+        public int getActionCount() {
+            return ts.getActionCount();
+        }
+
+        @Override
+        public int getAtomicPropositionCount() {
+            return ts.getAtomicPropositionCount();
+        }
+
+        @Override
+        public int getTransitionCount() {
+            return ts.getTransitionCount();
+        }
+
+        @Override
+        public S getState(int stateId) {
+            return ts.getState(stateId);
+        }
+
+        @Override
+        public int getStateId(S state) {
+            return ts.getStateId(state);
+        }
+
+        @Override
+        public A getAction(int actionId) {
+            return ts.getAction(actionId);
+        }
+
+        @Override
+        public int getActionId(A action) {
+            return ts.getActionId(action);
+        }
+
+        @Override
+        public P getAtomicProposition(int apId) {
+            return ts.getAtomicProposition(apId);
+        }
+
+        @Override
+        public int getAtomicPropositionId(P ap) {
+            return ts.getAtomicPropositionId(ap);
+        }
+
+        @Override
+        public boolean isInitial(int stateId) {
+            return ts.isInitial(stateId);
+        }
+
+        @Override
+        public int getPostStart(int stateId) {
+            return ts.getPostStart(stateId);
+        }
+
+        @Override
+        public int getPostEnd(int stateId) {
+            return ts.getPostEnd(stateId);
+        }
+
+        @Override
+        public int getPostTarget(int edge) {
+            return ts.getPostTarget(edge);
+        }
+
+        @Override
+        public int getPostAction(int edge) {
+            return ts.getPostAction(edge);
+        }
+
+        @Override
+        public int getPreStart(int stateId) {
+            return ts.getPreStart(stateId);
+        }
+
+        @Override
+        public int getPreEnd(int stateId) {
+            return ts.getPreEnd(stateId);
+        }
+
+        @Override
+        public int getPreSource(int edge) {
+            return ts.getPreSource(edge);
+        }
+
+        @Override
+        public int getPreAction(int edge) {
+            return ts.getPreAction(edge);
+        }
+
+        @Override
+        public boolean hasLabel(int stateId, int apId) {
+            return ts.hasLabel(stateId, apId);
+        }
+
+        @Override
+        public BitSet getLabel(int stateId) {
+            return ts.getLabel(stateId);
+        }
+    }
+
 }